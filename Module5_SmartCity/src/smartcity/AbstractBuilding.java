@@ -1,5 +1,8 @@
 package smartcity;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
 /**
  * MODULE 4: AbstractBuilding - Abstract Base Class
  *
@@ -21,27 +24,103 @@ public abstract class AbstractBuilding {
     protected String buildingId;
     protected String name;
     protected BuildingType buildingType; // ENUM usage
-    protected BuildingStatus status; // ENUM usage
+    protected volatile BuildingStatus status; // ENUM usage (changed by compare-and-set)
     protected int floors;
     protected double area;
     protected int capacity;
 
+    // Location on the city grid in meters (only valid once 'located' is true)
+    protected double locationX;
+    protected double locationY;
+    protected boolean located;
+
     // FINAL VARIABLE (can be set once, usually in constructor)
     protected final String constructionDate;
 
-    // Static counter
-    private static int buildingCounter = 0;
+    // CAS on the 'status' field without an extra AtomicReference object per building
+    private static final AtomicReferenceFieldUpdater<AbstractBuilding, BuildingStatus> STATUS =
+            AtomicReferenceFieldUpdater.newUpdater(AbstractBuilding.class, BuildingStatus.class, "status");
+
+    // Enum values cached for restoring (values() copies the array on every call)
+    private static final BuildingStatus[] STATUSES = BuildingStatus.values();
+
+    // Static ID allocator (safe to use from several threads)
+    private static final BuildingIdAllocator ID_ALLOCATOR = new BuildingIdAllocator();
+
+    // Owner notified when an indexed attribute changes (set by BuildingManager)
+    private volatile BuildingChangeListener changeListener;
+
+    // Slot assigned by the owning BuildingManager (-1 when not managed)
+    private int slot = -1;
+
+    // LIVE OCCUPANCY (people inside), updated lock-free by enter/exit events.
+    // NOT_ADMITTING while no BuildingManager owns the building.
+    static final int NOT_ADMITTING = -1;
+    private final AtomicInteger occupancy = new AtomicInteger(NOT_ADMITTING);
 
     // Constructor
     public AbstractBuilding(String name, BuildingType buildingType) {
-        buildingCounter++;
-        this.buildingId = "BLD-" + buildingCounter;
+        this.buildingId = "BLD-" + ID_ALLOCATOR.next();
         this.name = name;
         this.buildingType = buildingType;
         this.status = BuildingStatus.OPERATIONAL;
         this.constructionDate = java.time.LocalDate.now().toString(); // FINAL variable set once
     }
 
+    /**
+     * Restore constructor: reads the common fields written by visitFields()
+     * (the building type has already been read by the caller)
+     */
+    protected AbstractBuilding(BuildingType buildingType, BuildingFieldReader in) {
+        this.buildingType = buildingType;
+        this.buildingId = in.readString();
+        this.name = in.readString();
+        this.status = in.readEnum(STATUSES);
+        this.floors = in.readInt();
+        this.area = in.readDouble();
+        this.capacity = in.readInt();
+        this.located = in.readBoolean();
+        this.locationX = in.readDouble();
+        this.locationY = in.readDouble();
+        this.constructionDate = in.readString();
+        reserveId(buildingId);
+    }
+
+    // Keep newly created buildings from reusing a restored "BLD-n" ID
+    private static void reserveId(String buildingId) {
+        if (buildingId != null && buildingId.startsWith("BLD-")) {
+            try {
+                ID_ALLOCATOR.ensureAbove(Long.parseLong(buildingId.substring(4)));
+            } catch (NumberFormatException e) {
+                // Not an allocator ID - nothing to reserve
+            }
+        }
+    }
+
+    /**
+     * Visit every persistent field: the common fields first, then the
+     * subclass fields. The order matches the restore constructors.
+     */
+    final void visitFields(BuildingFieldVisitor visitor) {
+        visitor.visitEnum("type", buildingType);
+        visitor.visitString("id", buildingId);
+        visitor.visitString("name", name);
+        visitor.visitEnum("status", status);
+        visitor.visitInt("floors", floors);
+        visitor.visitDouble("area", area);
+        visitor.visitInt("capacity", capacity);
+        visitor.visitBoolean("located", located);
+        visitor.visitDouble("locationX", locationX);
+        visitor.visitDouble("locationY", locationY);
+        visitor.visitString("constructionDate", constructionDate);
+        visitSpecificFields(visitor);
+    }
+
+    /**
+     * Subclass fields, in the order the subclass restore constructor reads them
+     */
+    abstract void visitSpecificFields(BuildingFieldVisitor visitor);
+
     // ABSTRACT METHODS - subclasses MUST implement these
 
     /**
@@ -76,15 +155,35 @@ public abstract class AbstractBuilding {
         System.out.println("Floors: " + floors);
         System.out.println("Total Area: " + calculateTotalArea() + " sq meters");
         System.out.println("Capacity: " + capacity);
+        if (located) {
+            System.out.println("Location: (" + String.format("%.1f", locationX) + ", " +
+                    String.format("%.1f", locationY) + ")");
+        }
     }
 
     /**
      * Concrete method to change building status
+     * The change is validated against the transition matrix and applied
+     * with COMPARE-AND-SET, so concurrent changes can never be lost
+     * (a ConcurrentBuildingManager still re-indexes the building under its
+     * write lock afterwards)
      */
-    public void changeStatus(BuildingStatus newStatus) {
-        System.out.println("\nChanging status from " + status.getDisplayName() +
+    public void changeStatus(BuildingStatus newStatus) throws InvalidBuildingStatusException {
+        BuildingStatus oldStatus;
+        do {
+            oldStatus = this.status;
+            if (!oldStatus.canTransitionTo(newStatus)) {
+                throw new InvalidBuildingStatusException(
+                        "Cannot change status to " + newStatus.getDisplayName(),
+                        oldStatus,
+                        "Status Change"
+                );
+            }
+        } while (!STATUS.compareAndSet(this, oldStatus, newStatus));
+
+        System.out.println("\nChanging status from " + oldStatus.getDisplayName() +
                 " to " + newStatus.getDisplayName());
-        this.status = newStatus;
+        notifyStatusChanged(oldStatus, newStatus);
 
         // ENUM in SWITCH-CASE
         switch (newStatus) {
@@ -108,6 +207,34 @@ public abstract class AbstractBuilding {
         System.out.println("Recommended Action: " + newStatus.getRecommendedAction());
     }
 
+    /**
+     * Silent compare-and-set transition: succeeds only if the status is
+     * still 'expected' and the transition matrix allows the change
+     */
+    public boolean transitionStatus(BuildingStatus expected, BuildingStatus next) {
+        if (!expected.canTransitionTo(next) || !STATUS.compareAndSet(this, expected, next)) {
+            return false;
+        }
+        notifyStatusChanged(expected, next);
+        return true;
+    }
+
+    /**
+     * Set a status recorded in the mutation log (replay only): the change
+     * was validated when it was first made, so the matrix is not checked
+     */
+    void restoreStatus(BuildingStatus newStatus) {
+        notifyStatusChanged(STATUS.getAndSet(this, newStatus), newStatus);
+    }
+
+    // Let the owning manager move this building to the new status bucket
+    private void notifyStatusChanged(BuildingStatus oldStatus, BuildingStatus newStatus) {
+        BuildingChangeListener listener = changeListener;
+        if (listener != null && oldStatus != newStatus) {
+            listener.statusChanged(this, oldStatus);
+        }
+    }
+
     /**
      * Concrete method to calculate total area
      */
@@ -115,6 +242,15 @@ public abstract class AbstractBuilding {
         return area * floors;
     }
 
+    /**
+     * Concrete method to calculate straight-line distance (meters) to a point
+     */
+    public double distanceTo(double x, double y) {
+        double dx = locationX - x;
+        double dy = locationY - y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
     /**
      * Concrete method to check if building is usable
      */
@@ -143,29 +279,171 @@ public abstract class AbstractBuilding {
     public double getArea() { return area; }
     public int getCapacity() { return capacity; }
     public String getConstructionDate() { return constructionDate; } // FINAL variable getter
+    public double getLocationX() { return locationX; }
+    public double getLocationY() { return locationY; }
+    public boolean hasLocation() { return located; }
 
     // Setters (note: constructionDate has no setter because it's FINAL)
-    public void setName(String name) {
+    // SYNCHRONIZED so a change and its listener callback happen as one step
+    public synchronized void setName(String name) {
         if (name != null && !name.trim().isEmpty()) {
+            String oldName = this.name;
             this.name = name;
+
+            if (changeListener != null && !name.equals(oldName)) {
+                changeListener.nameChanged(this, oldName);
+            }
         }
     }
 
-    public void setFloors(int floors) {
+    public synchronized void setFloors(int floors) {
         if (floors > 0) {
+            int oldFloors = this.floors;
+            double oldTotalArea = calculateTotalArea();
             this.floors = floors;
+            notifyDimensionsChanged(oldFloors, oldTotalArea, capacity);
         }
     }
 
-    public void setArea(double area) {
+    public synchronized void setArea(double area) {
         if (area > 0) {
+            double oldTotalArea = calculateTotalArea();
             this.area = area;
+            notifyDimensionsChanged(floors, oldTotalArea, capacity);
         }
     }
 
-    public void setCapacity(int capacity) {
+    public synchronized void setCapacity(int capacity) {
         if (capacity > 0) {
+            int oldCapacity = this.capacity;
             this.capacity = capacity;
+            notifyDimensionsChanged(floors, calculateTotalArea(), oldCapacity);
+        }
+    }
+
+    public synchronized void setLocation(double x, double y) {
+        if (Double.isFinite(x) && Double.isFinite(y)) {
+            boolean wasLocated = this.located;
+            double oldX = this.locationX;
+            double oldY = this.locationY;
+            this.locationX = x;
+            this.locationY = y;
+            this.located = true;
+
+            if (changeListener != null) {
+                changeListener.locationChanged(this, wasLocated, oldX, oldY);
+            }
+        }
+    }
+
+    // Subclasses call this when a field used by calculateMaintenanceCost() changes
+    protected void notifyMaintenanceCostChanged() {
+        if (changeListener != null) {
+            changeListener.maintenanceCostChanged(this);
+        }
+    }
+
+    // Subclasses call this when any other persisted field changes
+    protected void notifyAttributesChanged() {
+        if (changeListener != null) {
+            changeListener.attributesChanged(this);
+        }
+    }
+
+    // Let the owning manager update its range indexes
+    private void notifyDimensionsChanged(int oldFloors, double oldTotalArea, int oldCapacity) {
+        if (changeListener != null) {
+            changeListener.dimensionsChanged(this, oldFloors, oldTotalArea, oldCapacity);
+        }
+    }
+
+    // Package-private: only BuildingManager attaches/detaches itself
+    BuildingChangeListener getChangeListener() {
+        return changeListener;
+    }
+
+    void setChangeListener(BuildingChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    int getSlot() {
+        return slot;
+    }
+
+    void setSlot(int slot) {
+        this.slot = slot;
+    }
+
+    // LIVE OCCUPANCY - CAS loops, no locks
+
+    /**
+     * People currently inside (0 when not managed)
+     */
+    public int getOccupancy() {
+        return Math.max(0, occupancy.get());
+    }
+
+    /**
+     * Current occupancy as a percentage of capacity
+     */
+    public double getUtilization() {
+        return capacity == 0 ? 0 : getOccupancy() * 100.0 / capacity;
+    }
+
+    // Package-private: BuildingManager opens a building when it is added...
+    void openForAdmission() {
+        occupancy.set(0);
+    }
+
+    // ...and closes it on removal, returning the people that were inside
+    int closeForAdmission() {
+        return Math.max(0, occupancy.getAndSet(NOT_ADMITTING));
+    }
+
+    /**
+     * ATOMIC ADMISSION: add people only if the result stays within capacity.
+     * Returns false if the building is not admitting (not managed).
+     */
+    boolean tryEnter(int people) throws BuildingCapacityException {
+        if (people <= 0) {
+            throw new IllegalArgumentException("Number of people must be positive");
+        }
+        while (true) {
+            int current = occupancy.get();
+            if (current == NOT_ADMITTING) {
+                return false;
+            }
+            // Written as a subtraction: current + people could overflow
+            if (people > capacity - current) {
+                long requested = (long) current + people;
+                throw new BuildingCapacityException(
+                        "Admission denied - building is full! (" + requested + " people requested)",
+                        (int) Math.min(requested, Integer.MAX_VALUE),
+                        capacity
+                );
+            }
+            if (occupancy.compareAndSet(current, current + people)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Remove up to 'people' occupants; returns how many actually left
+     */
+    int exit(int people) {
+        if (people <= 0) {
+            return 0;
+        }
+        while (true) {
+            int current = occupancy.get();
+            if (current <= 0) {
+                return 0; // empty or not managed
+            }
+            int leaving = Math.min(people, current);
+            if (occupancy.compareAndSet(current, current - leaving)) {
+                return leaving;
+            }
         }
     }
 
@@ -175,6 +453,6 @@ public abstract class AbstractBuilding {
     }
 
     public static int getBuildingCounter() {
-        return buildingCounter;
+        return (int) ID_ALLOCATOR.allocatedCount();
     }
 }
\ No newline at end of file
@@ -0,0 +1,196 @@
+package smartcity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * MODULE 5: AsyncBuildingManager - Non-blocking facade over a BuildingManager
+ *
+ * This demonstrates:
+ * - COMPLETABLEFUTURE results instead of blocking calls
+ * - SEPARATE EXECUTORS: quick lookups and slow aggregates never share
+ *   threads, so a long scan cannot delay a lookup
+ * - REQUEST COALESCING: identical requests that are already running share
+ *   one computation (one entry per request key in a ConcurrentHashMap)
+ * - CANCELLATION: every caller gets its own future; cancelling it only
+ *   detaches that caller, and the shared computation is cancelled when
+ *   the last waiting caller is gone
+ *
+ * The wrapped manager is called from several threads, so it should be a
+ * ConcurrentBuildingManager.
+ */
+public class AsyncBuildingManager implements AutoCloseable {
+
+    /**
+     * Computation whose result may be a checked exception
+     */
+    @FunctionalInterface
+    private interface Task<T> {
+        T run() throws Exception;
+    }
+
+    /**
+     * One running request, shared by all callers asking the same thing
+     */
+    private static class InFlight<T> {
+        final CompletableFuture<T> shared = new CompletableFuture<>();
+        int waiters; // changed only inside ConcurrentHashMap.compute() for this key
+    }
+
+    private final BuildingManager manager;
+    private final Executor lookupExecutor;
+    private final Executor aggregateExecutor;
+    private final ExecutorService ownedLookupExecutor;
+    private final ExecutorService ownedAggregateExecutor;
+
+    private final ConcurrentHashMap<String, InFlight<?>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * Default executors: a virtual thread per lookup, one thread for aggregates
+     */
+    public AsyncBuildingManager(BuildingManager manager) {
+        this.manager = manager;
+        this.ownedLookupExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        this.ownedAggregateExecutor = Executors.newSingleThreadExecutor();
+        this.lookupExecutor = ownedLookupExecutor;
+        this.aggregateExecutor = ownedAggregateExecutor;
+    }
+
+    /**
+     * Caller-provided executors (the caller is responsible for shutting them down)
+     */
+    public AsyncBuildingManager(BuildingManager manager, Executor lookupExecutor, Executor aggregateExecutor) {
+        this.manager = manager;
+        this.lookupExecutor = lookupExecutor;
+        this.aggregateExecutor = aggregateExecutor;
+        this.ownedLookupExecutor = null;
+        this.ownedAggregateExecutor = null;
+    }
+
+    // LOOKUPS - lookup executor
+
+    public CompletableFuture<AbstractBuilding> findBuildingById(String buildingId) {
+        return submit("id:" + buildingId, lookupExecutor, () -> manager.findBuildingById(buildingId));
+    }
+
+    public CompletableFuture<AbstractBuilding> findBuildingByName(String name) {
+        return submit("name:" + BuildingNameIndex.fold(name), lookupExecutor,
+                () -> manager.findBuildingByName(name));
+    }
+
+    // AGGREGATES - aggregate executor
+
+    public CompletableFuture<Double> calculateTotalMaintenance() {
+        return submit("maintenance", aggregateExecutor, manager::calculateTotalMaintenance);
+    }
+
+    public CompletableFuture<CityStatistics> getStatistics() {
+        return submit("statistics", aggregateExecutor, manager::getStatistics);
+    }
+
+    /**
+     * Number of distinct computations currently running
+     */
+    public int getInFlightCount() {
+        return inFlight.size();
+    }
+
+    /**
+     * Join the running computation for 'key' or start a new one,
+     * and return a future that belongs to this caller only
+     */
+    private <T> CompletableFuture<T> submit(String key, Executor executor, Task<T> task) {
+        boolean[] started = new boolean[1];
+
+        @SuppressWarnings("unchecked")
+        InFlight<T> entry = (InFlight<T>) inFlight.compute(key, (k, existing) -> {
+            if (existing != null && !existing.shared.isDone()) {
+                existing.waiters++; // COALESCE with the running request
+                return existing;
+            }
+            InFlight<T> created = new InFlight<>();
+            created.waiters = 1;
+            started[0] = true;
+            return created;
+        });
+
+        if (started[0]) {
+            // Started outside compute(): completion removes the entry from the map
+            entry.shared.whenComplete((result, error) -> inFlight.remove(key, entry));
+            try {
+                executor.execute(() -> run(entry.shared, task));
+            } catch (RuntimeException e) {
+                entry.shared.completeExceptionally(e); // executor rejected the task
+            }
+        }
+
+        CompletableFuture<T> caller = new CompletableFuture<>();
+        entry.shared.whenComplete((result, error) -> {
+            if (error != null) {
+                caller.completeExceptionally(unwrap(error));
+            } else {
+                caller.complete(result);
+            }
+        });
+        caller.whenComplete((result, error) -> {
+            if (caller.isCancelled()) {
+                leave(key, entry);
+            }
+        });
+        return caller;
+    }
+
+    private static <T> void run(CompletableFuture<T> shared, Task<T> task) {
+        if (shared.isDone()) {
+            return; // every caller cancelled before the task started
+        }
+        try {
+            shared.complete(task.run());
+        } catch (Exception e) {
+            shared.completeExceptionally(e);
+        }
+    }
+
+    // A caller cancelled - cancel the computation if nobody else is waiting
+    private void leave(String key, InFlight<?> entry) {
+        boolean[] last = new boolean[1];
+        inFlight.computeIfPresent(key, (k, current) -> {
+            if (current != entry) {
+                return current;
+            }
+            if (--entry.waiters == 0) {
+                last[0] = true;
+                return null; // remove
+            }
+            return current;
+        });
+        if (last[0]) {
+            // Outside compute(): cancelling runs the completion callbacks
+            entry.shared.cancel(false);
+        }
+    }
+
+    private static Throwable unwrap(Throwable error) {
+        if (error instanceof CompletionException && error.getCause() != null) {
+            return error.getCause();
+        }
+        return error;
+    }
+
+    /**
+     * Shut down the executors created by this facade
+     */
+    @Override
+    public void close() {
+        if (ownedLookupExecutor != null) {
+            ownedLookupExecutor.shutdown();
+        }
+        if (ownedAggregateExecutor != null) {
+            ownedAggregateExecutor.shutdown();
+        }
+    }
+}
@@ -0,0 +1,45 @@
+package smartcity;
+
+/**
+ * MODULE 5: BuildingCapability Enum
+ *
+ * Capabilities tracked per building in the capability bitmap index.
+ * Each constant knows how to evaluate itself for a building, so the
+ * instanceof checks and downcasts happen once when the index is updated
+ * instead of on every report.
+ */
+public enum BuildingCapability {
+    SERVICEABLE("Serviceable"),
+    ACCESSIBLE("Accessible"),
+    FULLY_ACCESSIBLE("Fully Accessible"),
+    CRITICAL_INFRASTRUCTURE("Critical Infrastructure"),
+    USABLE("Usable");
+
+    private final String displayName;
+
+    BuildingCapability(String displayName) {
+        this.displayName = displayName;
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    // Evaluate capability for a building (ENUM in SWITCH-CASE)
+    public boolean appliesTo(AbstractBuilding building) {
+        switch (this) {
+            case SERVICEABLE:
+                return building instanceof Serviceable;
+            case ACCESSIBLE:
+                return building instanceof Accessible;
+            case FULLY_ACCESSIBLE:
+                return building instanceof Accessible && ((Accessible) building).isFullyAccessible();
+            case CRITICAL_INFRASTRUCTURE:
+                return building.getBuildingType().isCriticalInfrastructure();
+            case USABLE:
+                return building.isUsable();
+            default:
+                return false;
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package smartcity;
+
+/**
+ * MODULE 5: BuildingChangeListener Interface
+ *
+ * Callback interface used by AbstractBuilding to notify its owner
+ * (the BuildingManager) that an indexed attribute has changed,
+ * so that the manager can keep its indexes up to date.
+ */
+interface BuildingChangeListener {
+
+    /**
+     * Called after the status of a building has changed
+     * (status changes are lock-free, so callbacks for the same building
+     * may arrive out of order - the listener should re-read getStatus())
+     */
+    void statusChanged(AbstractBuilding building, BuildingStatus oldStatus);
+
+    /**
+     * Called after the name of a building has changed
+     */
+    void nameChanged(AbstractBuilding building, String oldName);
+
+    /**
+     * Called after floors, area or capacity of a building has changed
+     * (old values are passed so the sorted indexes can find the old entries)
+     */
+    void dimensionsChanged(AbstractBuilding building, int oldFloors,
+                           double oldTotalArea, int oldCapacity);
+
+    /**
+     * Called after the location of a building has been set or moved
+     * (wasLocated is false when the building had no location before)
+     */
+    void locationChanged(AbstractBuilding building, boolean wasLocated,
+                         double oldX, double oldY);
+
+    /**
+     * Called after a subclass attribute that affects the maintenance cost has changed
+     */
+    void maintenanceCostChanged(AbstractBuilding building);
+
+    /**
+     * Called after a subclass attribute that is not indexed has changed
+     * (nothing to re-index, but the change still has to be persisted)
+     */
+    void attributesChanged(AbstractBuilding building);
+}
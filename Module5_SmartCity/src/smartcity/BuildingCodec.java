@@ -0,0 +1,178 @@
+package smartcity;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MODULE 5: BuildingCodec - Compact binary encoding of one building
+ *
+ * A record is the field sequence of AbstractBuilding.visitFields():
+ * - int / double: 4 / 8 bytes (big endian)
+ * - boolean / enum: 1 byte (enum ordinal)
+ * - String: int length in UTF-8 bytes (-1 for null) followed by the bytes
+ *
+ * The first field is the building type, which selects the subclass whose
+ * restore constructor reads the remaining fields.
+ */
+class BuildingCodec {
+
+    private static final BuildingType[] TYPES = BuildingType.values();
+
+    private BuildingCodec() {
+    }
+
+    /**
+     * Create the building described by the next record
+     *
+     * @throws IllegalArgumentException if the record is not a known building
+     */
+    static AbstractBuilding decode(BuildingFieldReader in) {
+        BuildingType type = in.readEnum(TYPES);
+        switch (type) {
+            case HOSPITAL:
+                return new ModernHospital(in);
+            case SCHOOL:
+                return new ModernSchool(in);
+            case OFFICE:
+                return new ModernOffice(in);
+            case PARK:
+                return new PublicPark(in);
+            default:
+                throw new IllegalArgumentException("No building class for type " + type);
+        }
+    }
+
+    /**
+     * Appends records to a growable direct buffer. The caller drains the
+     * buffer (flip / write / clear) between records.
+     */
+    static final class BinaryWriter implements BuildingFieldVisitor {
+
+        private ByteBuffer buffer;
+
+        BinaryWriter(int initialCapacity) {
+            buffer = ByteBuffer.allocateDirect(initialCapacity);
+        }
+
+        ByteBuffer buffer() {
+            return buffer;
+        }
+
+        /**
+         * Append one building (callers that need a consistent copy of a
+         * building that may be modified concurrently hold its monitor)
+         */
+        void write(AbstractBuilding building) {
+            building.visitFields(this);
+        }
+
+        void writeByte(byte value) {
+            ensureRemaining(1);
+            buffer.put(value);
+        }
+
+        void writeLong(long value) {
+            ensureRemaining(Long.BYTES);
+            buffer.putLong(value);
+        }
+
+        private void ensureRemaining(int bytes) {
+            if (buffer.remaining() >= bytes) {
+                return;
+            }
+            int newCapacity = Math.max(buffer.capacity() * 2, buffer.position() + bytes);
+            ByteBuffer bigger = ByteBuffer.allocateDirect(newCapacity);
+            buffer.flip();
+            bigger.put(buffer);
+            buffer = bigger;
+        }
+
+        @Override
+        public void visitInt(String field, int value) {
+            ensureRemaining(Integer.BYTES);
+            buffer.putInt(value);
+        }
+
+        @Override
+        public void visitDouble(String field, double value) {
+            ensureRemaining(Double.BYTES);
+            buffer.putDouble(value);
+        }
+
+        @Override
+        public void visitBoolean(String field, boolean value) {
+            ensureRemaining(1);
+            buffer.put(value ? (byte) 1 : (byte) 0);
+        }
+
+        @Override
+        public void visitString(String field, String value) {
+            if (value == null) {
+                visitInt(field, -1);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            ensureRemaining(Integer.BYTES + bytes.length);
+            buffer.putInt(bytes.length);
+            buffer.put(bytes);
+        }
+
+        @Override
+        public void visitEnum(String field, Enum<?> value) {
+            ensureRemaining(1);
+            buffer.put((byte) value.ordinal());
+        }
+    }
+
+    /**
+     * Reads records straight out of a (usually memory-mapped) buffer.
+     * Malformed data surfaces as a RuntimeException (BufferUnderflowException
+     * or IllegalArgumentException) for the caller to translate.
+     */
+    static final class BinaryReader implements BuildingFieldReader {
+
+        private final ByteBuffer buffer;
+
+        BinaryReader(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int readInt() {
+            return buffer.getInt();
+        }
+
+        @Override
+        public double readDouble() {
+            return buffer.getDouble();
+        }
+
+        @Override
+        public boolean readBoolean() {
+            return buffer.get() != 0;
+        }
+
+        @Override
+        public String readString() {
+            int length = buffer.getInt();
+            if (length == -1) {
+                return null;
+            }
+            if (length < 0 || length > buffer.remaining()) {
+                throw new IllegalArgumentException("Invalid string length " + length);
+            }
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+
+        @Override
+        public <E extends Enum<E>> E readEnum(E[] values) {
+            int ordinal = buffer.get() & 0xFF;
+            if (ordinal >= values.length) {
+                throw new IllegalArgumentException("Unknown ordinal " + ordinal);
+            }
+            return values[ordinal];
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package smartcity;
+
+import java.util.Arrays;
+
+/**
+ * MODULE 5: BuildingColumns - Struct-of-arrays copy of numeric attributes
+ *
+ * Each attribute is kept in its own PRIMITIVE ARRAY indexed by slot, so
+ * breakdowns the running statistics do not keep (totals per type) run as
+ * tight loops over contiguous memory instead of visiting one heap object
+ * per building.
+ *
+ * The arrays hold the values a building is currently INDEXED UNDER: when a
+ * setter callback arrives, the manager takes the old status, dimensions and
+ * maintenance cost from here, so the range indexes and running statistics
+ * are always corrected by exactly what was added to them.
+ *
+ * Slots without a building have type -1 and are skipped by every loop.
+ */
+class BuildingColumns {
+
+    private static final byte EMPTY = -1;
+
+    // Lookup tables by enum ordinal
+    private static final BuildingStatus[] STATUSES = BuildingStatus.values();
+    private static final BuildingType[] TYPES = BuildingType.values();
+
+    private int[] floors = new int[0];
+    private double[] totalArea = new double[0];
+    private int[] capacity = new int[0];
+    private double[] maintenanceCost = new double[0];
+    private byte[] type = new byte[0];
+    private byte[] status = new byte[0];
+    private int slotLimit; // slots [0, slotLimit) may hold data
+
+    private void ensureSlot(int slot) {
+        if (slot < type.length) {
+            return;
+        }
+        int newLength = Math.max(64, Math.max(slot + 1, type.length * 2));
+        floors = Arrays.copyOf(floors, newLength);
+        totalArea = Arrays.copyOf(totalArea, newLength);
+        capacity = Arrays.copyOf(capacity, newLength);
+        maintenanceCost = Arrays.copyOf(maintenanceCost, newLength);
+        int oldLength = type.length;
+        type = Arrays.copyOf(type, newLength);
+        status = Arrays.copyOf(status, newLength);
+        Arrays.fill(type, oldLength, newLength, EMPTY);
+    }
+
+    /**
+     * Copy every attribute of the building stored in 'slot'
+     * (the type is written last: a building whose getters throw is never counted)
+     */
+    public void set(int slot, AbstractBuilding building) {
+        ensureSlot(slot);
+        status[slot] = (byte) building.getStatus().ordinal();
+        updateDimensions(slot, building);
+        type[slot] = (byte) building.getBuildingType().ordinal();
+        slotLimit = Math.max(slotLimit, slot + 1);
+    }
+
+    public void updateStatus(int slot, BuildingStatus newStatus) {
+        status[slot] = (byte) newStatus.ordinal();
+    }
+
+    /**
+     * Refresh floors, area, capacity and the (area dependent) maintenance cost
+     */
+    public void updateDimensions(int slot, AbstractBuilding building) {
+        floors[slot] = building.getFloors();
+        totalArea[slot] = building.calculateTotalArea();
+        capacity[slot] = building.getCapacity();
+        maintenanceCost[slot] = building.calculateMaintenanceCost();
+    }
+
+    public void updateMaintenanceCost(int slot, AbstractBuilding building) {
+        maintenanceCost[slot] = building.calculateMaintenanceCost();
+    }
+
+    public BuildingType getType(int slot) {
+        return TYPES[type[slot]];
+    }
+
+    public BuildingStatus getStatus(int slot) {
+        return STATUSES[status[slot]];
+    }
+
+    public int getFloors(int slot) {
+        return floors[slot];
+    }
+
+    public double getTotalArea(int slot) {
+        return totalArea[slot];
+    }
+
+    public int getCapacity(int slot) {
+        return capacity[slot];
+    }
+
+    public double getMaintenanceCost(int slot) {
+        return maintenanceCost[slot];
+    }
+
+    /**
+     * Mark a freed slot as empty (its other values are overwritten by the next set())
+     */
+    public void clear(int slot) {
+        if (slot >= 0 && slot < type.length) {
+            type[slot] = EMPTY;
+        }
+    }
+
+    /**
+     * Drop every column (the slot store starts over from slot 0)
+     */
+    public void clearAll() {
+        floors = new int[0];
+        totalArea = new double[0];
+        capacity = new int[0];
+        maintenanceCost = new double[0];
+        type = new byte[0];
+        status = new byte[0];
+        slotLimit = 0;
+    }
+
+    // AGGREGATES - one pass over the primitive arrays, result indexed by type ordinal
+
+    public int[] countByType() {
+        int[] counts = new int[TYPES.length];
+        for (int i = 0; i < slotLimit; i++) {
+            if (type[i] != EMPTY) {
+                counts[type[i]]++;
+            }
+        }
+        return counts;
+    }
+
+    public double[] sumTotalAreaByType() {
+        double[] sums = new double[TYPES.length];
+        for (int i = 0; i < slotLimit; i++) {
+            if (type[i] != EMPTY) {
+                sums[type[i]] += totalArea[i];
+            }
+        }
+        return sums;
+    }
+
+    public long[] sumCapacityByType() {
+        long[] sums = new long[TYPES.length];
+        for (int i = 0; i < slotLimit; i++) {
+            if (type[i] != EMPTY) {
+                sums[type[i]] += capacity[i];
+            }
+        }
+        return sums;
+    }
+
+    public double[] sumMaintenanceCostByType() {
+        double[] sums = new double[TYPES.length];
+        for (int i = 0; i < slotLimit; i++) {
+            if (type[i] != EMPTY) {
+                sums[type[i]] += maintenanceCost[i];
+            }
+        }
+        return sums;
+    }
+}
@@ -0,0 +1,507 @@
+package smartcity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.regex.Pattern;
+
+/**
+ * MODULE 5: BuildingCsvImporter - Streaming bulk import from CSV files
+ *
+ * This demonstrates:
+ * - NIO CHANNEL + BYTEBUFFER reading in fixed-size chunks, so memory use
+ *   does not depend on the size of the file
+ * - BYTE-LEVEL PARSING: rows and fields are found as offsets into the
+ *   buffer and numbers are parsed straight from the bytes; a String is
+ *   only created for text the building keeps (name, company, ...)
+ * - BAD ROWS are counted and sampled in the report - the import goes on
+ * - Parsed buildings go through a BuildingIngestPipeline (bounded queue,
+ *   validation, batched adds)
+ *
+ * The first row is a header naming the columns (any order, case ignored):
+ *   type, name, floors, area, capacity, educationLevel, companyName,
+ *   businessType, parkType
+ * The type column selects the class (other columns are ignored):
+ *   HOSPITAL - name, floors, area, capacity
+ *   SCHOOL   - name, floors, area, capacity, educationLevel
+ *   OFFICE   - name, floors, area, capacity, companyName, businessType
+ *   PARK     - name, area, capacity, parkType
+ * A field may be quoted ("..." with "" for a quote) to contain commas or
+ * line breaks.
+ *
+ * An importer reuses its buffer and is not thread-safe.
+ */
+public class BuildingCsvImporter {
+
+    public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+    // Columns understood by the importer
+    private static final String[] COLUMNS = {
+            "type", "name", "floors", "area", "capacity",
+            "educationLevel", "companyName", "businessType", "parkType"
+    };
+    private static final int TYPE = 0;
+    private static final int NAME = 1;
+    private static final int FLOORS = 2;
+    private static final int AREA = 3;
+    private static final int CAPACITY = 4;
+    private static final int EDUCATION_LEVEL = 5;
+    private static final int COMPANY_NAME = 6;
+    private static final int BUSINESS_TYPE = 7;
+    private static final int PARK_TYPE = 8;
+
+    private static final int MAX_FIELDS = 64;
+
+    // Decimal syntax accepted by the slow path: digits, one dot, an optional
+    // exponent (no NaN, Infinity, hex floats or 'd'/'f' suffixes)
+    private static final Pattern DECIMAL = Pattern.compile("[+-]?(\\d+\\.?\\d*|\\.\\d+)([eE][+-]?\\d+)?");
+
+    // Types with a concrete class, and their names as bytes (matched without a String per row)
+    private static final BuildingType[] IMPORTABLE = {
+            BuildingType.HOSPITAL, BuildingType.SCHOOL, BuildingType.OFFICE, BuildingType.PARK
+    };
+    private static final byte[][] TYPE_NAMES = new byte[IMPORTABLE.length][];
+
+    // Exact powers of ten for the fast decimal path (10^22 is the largest exact double)
+    private static final double[] POWERS_OF_TEN = new double[23];
+
+    static {
+        for (int i = 0; i < IMPORTABLE.length; i++) {
+            TYPE_NAMES[i] = IMPORTABLE[i].name().getBytes(StandardCharsets.US_ASCII);
+        }
+        POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i < POWERS_OF_TEN.length; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final BuildingManager manager;
+    private final byte[] bytes;
+    private final ByteBuffer buffer; // wraps 'bytes'
+
+    // Fields of the current row: [fieldStart, fieldEnd) in 'bytes'
+    private final int[] fieldStart = new int[MAX_FIELDS];
+    private final int[] fieldEnd = new int[MAX_FIELDS];
+    private int fieldCount;
+
+    // Header: column -> field position in a row (-1 if the column is missing)
+    private final int[] columnOf = new int[COLUMNS.length];
+
+    // Line breaks inside quoted fields of the last row found
+    private int embeddedLines;
+
+    // First problem found in the current row (null = row is fine)
+    private String problem;
+
+    public BuildingCsvImporter(BuildingManager manager) {
+        this(manager, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BuildingCsvImporter(BuildingManager manager, int bufferSize) {
+        if (bufferSize < 1024) {
+            throw new IllegalArgumentException("Buffer size must be at least 1024 bytes");
+        }
+        this.manager = manager;
+        this.bytes = new byte[bufferSize];
+        this.buffer = ByteBuffer.wrap(bytes);
+    }
+
+    /**
+     * Import every row of a CSV file and print the report once
+     *
+     * @throws InvalidBuildingDataException if the header has no type column
+     */
+    public IngestReport importFile(Path file)
+            throws IOException, InterruptedException, InvalidBuildingDataException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return importFrom(channel);
+        }
+    }
+
+    /**
+     * Import every row read from a channel and print the report once
+     */
+    public IngestReport importFrom(ReadableByteChannel channel)
+            throws IOException, InterruptedException, InvalidBuildingDataException {
+        IngestReport rowProblems = new IngestReport();
+        BuildingIngestPipeline pipeline = new BuildingIngestPipeline(manager);
+        pipeline.start();
+
+        IngestReport report;
+        try {
+            readRows(channel, pipeline, rowProblems);
+        } finally {
+            report = pipeline.finishQuietly();
+        }
+        report.merge(rowProblems);
+        report.display();
+        return report;
+    }
+
+    // READ LOOP: rows are parsed in place; an incomplete last row is moved
+    // to the front of the buffer before the next read
+    private void readRows(ReadableByteChannel channel, BuildingIngestPipeline pipeline,
+                          IngestReport rowProblems)
+            throws IOException, InterruptedException, InvalidBuildingDataException {
+        int position = 0; // start of the unparsed data
+        int end = 0;      // end of the data read so far
+        boolean eof = false;
+        boolean headerRead = false;
+        boolean skipping = false; // inside a row longer than the buffer
+        long line = 1;
+
+        while (true) {
+            if (skipping) {
+                int newline = indexOfNewline(position, end);
+                if (newline >= 0) {
+                    position = newline + 1;
+                    line++;
+                    skipping = false;
+                    continue;
+                }
+                if (eof) {
+                    return;
+                }
+                position = end; // drop the rest of the over-long row
+            } else {
+                int rowEnd = findRowEnd(position, end, eof);
+                if (rowEnd >= 0) {
+                    int contentEnd = rowEnd;
+                    if (contentEnd > position && bytes[contentEnd - 1] == '\r') {
+                        contentEnd--;
+                    }
+                    if (contentEnd > position) { // blank lines are skipped
+                        splitFields(position, contentEnd);
+                        if (!headerRead) {
+                            readHeader();
+                            headerRead = true;
+                        } else {
+                            AbstractBuilding building = toBuilding();
+                            if (building != null) {
+                                pipeline.submit(building);
+                            } else {
+                                rowProblems.invalidRow(line, problem);
+                            }
+                        }
+                    }
+                    line += 1 + embeddedLines;
+                    position = rowEnd + 1;
+                    continue;
+                }
+                if (eof) {
+                    return;
+                }
+                if (position == 0 && end == bytes.length) {
+                    rowProblems.invalidRow(line, "row is longer than the " + bytes.length + " byte buffer");
+                    skipping = true;
+                    continue;
+                }
+            }
+
+            // REFILL: keep the unparsed tail, read behind it
+            int remaining = end - position;
+            System.arraycopy(bytes, position, bytes, 0, remaining);
+            position = 0;
+            end = remaining;
+            buffer.limit(bytes.length).position(end);
+            int read = channel.read(buffer);
+            while (read == 0) {
+                read = channel.read(buffer);
+            }
+            if (read < 0) {
+                eof = true;
+            } else {
+                end += read;
+            }
+        }
+    }
+
+    private int indexOfNewline(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (bytes[i] == '\n') {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * End of the row starting at 'from' (index of its line break, or 'to'
+     * for a last row without one), or -1 if more data is needed.
+     * Line breaks inside quotes belong to the field.
+     */
+    private int findRowEnd(int from, int to, boolean eof) {
+        boolean quoted = false;
+        embeddedLines = 0;
+        for (int i = from; i < to; i++) {
+            byte b = bytes[i];
+            if (b == '"') {
+                quoted = !quoted; // an escaped "" toggles twice
+            } else if (b == '\n') {
+                if (!quoted) {
+                    return i;
+                }
+                embeddedLines++;
+            }
+        }
+        return eof && from < to ? to : -1;
+    }
+
+    /**
+     * Record the field boundaries of one row; quoted fields are unescaped
+     * in place (the unescaped text is never longer than the original)
+     */
+    private void splitFields(int from, int to) {
+        fieldCount = 0;
+        int i = from;
+        while (fieldCount < MAX_FIELDS) {
+            while (i < to && bytes[i] == ' ') {
+                i++;
+            }
+            if (i < to && bytes[i] == '"') {
+                int read = i + 1;
+                int write = read;
+                fieldStart[fieldCount] = read;
+                while (read < to) {
+                    if (bytes[read] == '"') {
+                        if (read + 1 < to && bytes[read + 1] == '"') {
+                            bytes[write++] = '"';
+                            read += 2;
+                            continue;
+                        }
+                        break; // closing quote
+                    }
+                    bytes[write++] = bytes[read++];
+                }
+                fieldEnd[fieldCount] = write;
+                i = read + 1;
+                while (i < to && bytes[i] != ',') {
+                    i++; // anything between the closing quote and the comma is ignored
+                }
+            } else {
+                fieldStart[fieldCount] = i;
+                while (i < to && bytes[i] != ',') {
+                    i++;
+                }
+                int fieldTo = i;
+                while (fieldTo > fieldStart[fieldCount] && bytes[fieldTo - 1] == ' ') {
+                    fieldTo--;
+                }
+                fieldEnd[fieldCount] = fieldTo;
+            }
+            fieldCount++;
+            if (i >= to) {
+                return;
+            }
+            i++; // skip the comma
+        }
+    }
+
+    private void readHeader() throws InvalidBuildingDataException {
+        Arrays.fill(columnOf, -1);
+        for (int field = 0; field < fieldCount; field++) {
+            String header = new String(bytes, fieldStart[field], fieldEnd[field] - fieldStart[field],
+                    StandardCharsets.UTF_8).trim();
+            if (field == 0 && header.startsWith("\uFEFF")) {
+                header = header.substring(1); // byte order mark
+            }
+            for (int column = 0; column < COLUMNS.length; column++) {
+                if (COLUMNS[column].equalsIgnoreCase(header) && columnOf[column] < 0) {
+                    columnOf[column] = field;
+                }
+            }
+        }
+        if (columnOf[TYPE] < 0) {
+            throw new InvalidBuildingDataException(
+                    "CSV header has no 'type' column",
+                    "type",
+                    String.join(",", headerNames())
+            );
+        }
+    }
+
+    private String[] headerNames() {
+        String[] names = new String[fieldCount];
+        for (int field = 0; field < fieldCount; field++) {
+            names[field] = new String(bytes, fieldStart[field], fieldEnd[field] - fieldStart[field],
+                    StandardCharsets.UTF_8);
+        }
+        return names;
+    }
+
+    // ROW -> BUILDING (null when the row has a problem)
+
+    private AbstractBuilding toBuilding() {
+        problem = null;
+        BuildingType type = typeValue();
+        if (type == null) {
+            return null;
+        }
+
+        String name = textValue(NAME);
+        int floors = type == BuildingType.PARK ? 1 : intValue(FLOORS);
+        double area = doubleValue(AREA);
+        int capacity = intValue(CAPACITY);
+
+        switch (type) {
+            case HOSPITAL:
+                return problem == null ? new ModernHospital(name, floors, area, capacity) : null;
+            case SCHOOL:
+                String educationLevel = textValue(EDUCATION_LEVEL);
+                return problem == null
+                        ? new ModernSchool(name, floors, area, capacity, educationLevel) : null;
+            case OFFICE:
+                String companyName = textValue(COMPANY_NAME);
+                String businessType = textValue(BUSINESS_TYPE);
+                return problem == null
+                        ? new ModernOffice(name, floors, area, capacity, companyName, businessType) : null;
+            default:
+                String parkType = textValue(PARK_TYPE);
+                return problem == null ? new PublicPark(name, area, capacity, parkType) : null;
+        }
+    }
+
+    private void problem(String message) {
+        if (problem == null) {
+            problem = message;
+        }
+    }
+
+    // Field of a row for a column, or -1 if the row has no value for it
+    private int fieldOf(int column) {
+        int field = columnOf[column];
+        if (field < 0 || field >= fieldCount || fieldEnd[field] == fieldStart[field]) {
+            problem("missing " + COLUMNS[column]);
+            return -1;
+        }
+        return field;
+    }
+
+    private String raw(int field) {
+        return new String(bytes, fieldStart[field], fieldEnd[field] - fieldStart[field], StandardCharsets.UTF_8);
+    }
+
+    private BuildingType typeValue() {
+        int field = fieldOf(TYPE);
+        if (field < 0) {
+            return null;
+        }
+        int length = fieldEnd[field] - fieldStart[field];
+        for (int t = 0; t < IMPORTABLE.length; t++) {
+            byte[] name = TYPE_NAMES[t];
+            if (name.length != length) {
+                continue;
+            }
+            int i = 0;
+            while (i < length && (bytes[fieldStart[field] + i] & 0xDF) == name[i]) {
+                i++; // & 0xDF: ASCII upper case
+            }
+            if (i == length) {
+                return IMPORTABLE[t];
+            }
+        }
+        problem("unknown building type '" + raw(field) + "'");
+        return null;
+    }
+
+    private String textValue(int column) {
+        int field = fieldOf(column);
+        return field < 0 ? null : raw(field);
+    }
+
+    private int intValue(int column) {
+        int field = fieldOf(column);
+        if (field < 0) {
+            return 0;
+        }
+        int i = fieldStart[field];
+        int to = fieldEnd[field];
+        boolean negative = bytes[i] == '-';
+        if (negative || bytes[i] == '+') {
+            i++;
+        }
+        if (i == to) {
+            problem(COLUMNS[column] + " is not a whole number: '" + raw(field) + "'");
+            return 0;
+        }
+        long value = 0;
+        for (; i < to; i++) {
+            int digit = bytes[i] - '0';
+            if (digit < 0 || digit > 9) {
+                problem(COLUMNS[column] + " is not a whole number: '" + raw(field) + "'");
+                return 0;
+            }
+            value = value * 10 + digit;
+            if (value > Integer.MAX_VALUE + 1L) {
+                problem(COLUMNS[column] + " is too large: '" + raw(field) + "'");
+                return 0;
+            }
+        }
+        if (!negative && value > Integer.MAX_VALUE) {
+            problem(COLUMNS[column] + " is too large: '" + raw(field) + "'");
+            return 0;
+        }
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * Plain decimals ("123", "-4.75") are parsed from the bytes: the digits
+     * form an exact long and one division by an exact power of ten gives
+     * the correctly rounded double. Other decimal syntax (exponents, very
+     * long numbers) goes through Double.parseDouble; results that are not
+     * finite (e.g. "1e400") are rejected.
+     */
+    private double doubleValue(int column) {
+        int field = fieldOf(column);
+        if (field < 0) {
+            return 0;
+        }
+        int i = fieldStart[field];
+        int to = fieldEnd[field];
+        boolean negative = bytes[i] == '-';
+        if (negative || bytes[i] == '+') {
+            i++;
+        }
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean dot = false;
+        boolean simple = i < to;
+        for (; i < to && simple; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                mantissa = mantissa * 10 + (b - '0');
+                digits++;
+                if (dot) {
+                    fractionDigits++;
+                }
+                simple = digits <= 15;
+            } else if (b == '.' && !dot) {
+                dot = true;
+            } else {
+                simple = false;
+            }
+        }
+        if (simple && digits > 0 && fractionDigits < POWERS_OF_TEN.length) {
+            double value = mantissa / POWERS_OF_TEN[fractionDigits];
+            return negative ? -value : value;
+        }
+
+        String text = raw(field);
+        if (!DECIMAL.matcher(text).matches()) {
+            problem(COLUMNS[column] + " is not a number: '" + text + "'");
+            return 0;
+        }
+        double value = Double.parseDouble(text);
+        if (!Double.isFinite(value)) {
+            problem(COLUMNS[column] + " is out of range: '" + text + "'");
+            return 0;
+        }
+        return value;
+    }
+}
@@ -0,0 +1,543 @@
+package smartcity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * MODULE 5: BuildingExporter - Streaming NDJSON / CSV export
+ *
+ * This demonstrates:
+ * - STREAMING output: buildings come from an MVCC snapshot (no list copy)
+ *   and are encoded one by one into a single REUSABLE byte buffer, which
+ *   is written to a WritableByteChannel whenever it fills up
+ * - CONSTANT MEMORY: no String, byte[] or row object is built per building;
+ *   characters and numbers are encoded straight into the buffer
+ * - The BuildingFieldVisitor walk, so subclass fields are exported without
+ *   the exporter knowing every subclass
+ *
+ * Besides the stored fields every record carries derived values:
+ * totalArea and maintenanceCost, serviceCost and services for
+ * Serviceable buildings, and fullyAccessible for Accessible ones.
+ *
+ * CSV uses one fixed header (the union of all fields). Each building type
+ * visits its fields in header order, so a row is written left to right
+ * and columns the type does not have are left empty. The type, name,
+ * floors, area, capacity, educationLevel, companyName, businessType and
+ * parkType columns match BuildingCsvImporter, so an export can be
+ * imported again.
+ */
+public class BuildingExporter {
+
+    public enum Format { NDJSON, CSV }
+
+    static final int DEFAULT_BUFFER_SIZE = 1024 * 1024;
+
+    // Room for the longest encoded number or escape sequence
+    private static final int MAX_TOKEN = 32;
+
+    // CSV header, in visitFields() order for every building type
+    private static final String[] CSV_COLUMNS = {
+            "type", "id", "name", "status", "floors", "area", "capacity",
+            "located", "locationX", "locationY", "constructionDate",
+            "emergencyBeds", "numberOfDoctors", "hasEmergencyRoom", "specialization",
+            "numberOfClassrooms", "numberOfTeachers", "educationLevel", "hasLaboratory", "hasLibrary",
+            "companyName", "numberOfEmployees", "businessType", "hasParkingLot", "parkingSpaces",
+            "greenSpaceArea", "hasPlayground", "hasFountain", "numberOfBenches", "parkType",
+            "wheelchairAccess", "hasElevatorSystem", "accessibleParking",
+            "licenseNumber", "accreditationId", "businessLicenseId", "parkRegistrationId",
+            "totalArea", "maintenanceCost", "serviceCost", "services", "fullyAccessible"
+    };
+
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    private final BuildingManager manager;
+    private final Format format;
+    private final int bufferSize;
+    private long bytesWritten;
+
+    public BuildingExporter(BuildingManager manager, Format format) {
+        this(manager, format, DEFAULT_BUFFER_SIZE);
+    }
+
+    public BuildingExporter(BuildingManager manager, Format format, int bufferSize) {
+        if (bufferSize < 1024) {
+            throw new IllegalArgumentException("Buffer size must be at least 1024 bytes");
+        }
+        this.manager = manager;
+        this.format = format;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * Export every building to 'file' (created or truncated)
+     *
+     * @return number of buildings written
+     */
+    public long exportFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            return exportTo(channel);
+        }
+    }
+
+    /**
+     * Export every building to 'channel' (the channel is not closed)
+     * Uses an MVCC snapshot, so the manager stays usable while exporting
+     *
+     * @return number of buildings written
+     */
+    public long exportTo(WritableByteChannel channel) throws IOException {
+        Encoder encoder = format == Format.CSV
+                ? new CsvEncoder(channel, bufferSize)
+                : new JsonEncoder(channel, bufferSize);
+        long count = 0;
+
+        try {
+            encoder.begin();
+            for (AbstractBuilding building : manager.snapshot()) {
+                synchronized (building) { // setters cannot interleave with the field walk
+                    encoder.startRecord();
+                    building.visitFields(encoder);
+                    encoder.visitDouble("totalArea", building.calculateTotalArea());
+                    encoder.visitDouble("maintenanceCost", building.calculateMaintenanceCost());
+                    if (building instanceof Serviceable serviceable) {
+                        encoder.visitDouble("serviceCost", serviceable.calculateServiceCost());
+                        encoder.visitStrings("services", serviceable.getAvailableServices());
+                    }
+                    if (building instanceof Accessible accessible) {
+                        encoder.visitBoolean("fullyAccessible", accessible.isFullyAccessible());
+                    }
+                    encoder.endRecord();
+                }
+                count++;
+            }
+            encoder.drain();
+        } catch (UncheckedIOException e) {
+            throw e.getCause(); // from a drain inside a visitor method
+        }
+        bytesWritten = encoder.bytesWritten;
+        return count;
+    }
+
+    /**
+     * Bytes written by the last export
+     */
+    public long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    /**
+     * Encodes fields straight into the output buffer
+     */
+    private abstract static class Encoder implements BuildingFieldVisitor {
+
+        private final WritableByteChannel channel;
+        private final byte[] bytes;
+        private final ByteBuffer buffer; // wraps 'bytes' for channel writes
+        private int position;
+        long bytesWritten;
+
+        // Reused for doubles (StringBuilder.append(double) does not create a String)
+        private final StringBuilder number = new StringBuilder(MAX_TOKEN);
+
+        Encoder(WritableByteChannel channel, int bufferSize) {
+            this.channel = channel;
+            this.bytes = new byte[bufferSize];
+            this.buffer = ByteBuffer.wrap(bytes);
+        }
+
+        void begin() {
+        }
+
+        abstract void startRecord();
+
+        abstract void endRecord();
+
+        abstract void visitStrings(String field, String[] values);
+
+        // Make room for 'bytes' more bytes (at most MAX_TOKEN): the buffer is
+        // only written out when full, so the channel sees large writes
+        final void ensure(int bytes) {
+            if (this.bytes.length - position < bytes) {
+                try {
+                    drain();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            }
+        }
+
+        final void drain() throws IOException {
+            buffer.limit(position).position(0);
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            bytesWritten += position;
+            position = 0;
+        }
+
+        // Store one byte; the caller has called ensure()
+        final void put(int b) {
+            bytes[position++] = (byte) b;
+        }
+
+        final void writeByte(int b) {
+            ensure(1);
+            put(b);
+        }
+
+        final void writeAscii(String text) {
+            for (int i = 0; i < text.length(); i++) {
+                writeByte(text.charAt(i));
+            }
+        }
+
+        final void writeInt(int number) {
+            ensure(MAX_TOKEN);
+            long value = number; // long: -Integer.MIN_VALUE does not fit in an int
+            if (value < 0) {
+                put('-');
+                value = -value;
+            }
+            int digits = 1;
+            for (long rest = value; rest >= 10; rest /= 10) {
+                digits++;
+            }
+            position += digits;
+            for (int i = position - 1; i >= position - digits; i--) { // last digit first
+                bytes[i] = (byte) ('0' + value % 10);
+                value /= 10;
+            }
+        }
+
+        final void writeDouble(double value) {
+            number.setLength(0);
+            number.append(value);
+            ensure(number.length());
+            for (int i = 0; i < number.length(); i++) {
+                put(number.charAt(i));
+            }
+        }
+
+        final void writeBoolean(boolean value) {
+            writeAscii(value ? "true" : "false");
+        }
+
+        // UTF-8 encode one character (surrogate pairs are combined by the caller)
+        final void writeCodePoint(int c) {
+            ensure(4);
+            if (c < 0x80) {
+                put(c);
+            } else if (c < 0x800) {
+                put(0xC0 | c >> 6);
+                put(0x80 | c & 0x3F);
+            } else if (c < 0x10000) {
+                put(0xE0 | c >> 12);
+                put(0x80 | c >> 6 & 0x3F);
+                put(0x80 | c & 0x3F);
+            } else {
+                put(0xF0 | c >> 18);
+                put(0x80 | c >> 12 & 0x3F);
+                put(0x80 | c >> 6 & 0x3F);
+                put(0x80 | c & 0x3F);
+            }
+        }
+
+        // Code point at 'i'; an unpaired surrogate becomes '?'
+        static int codePointAt(String text, int i) {
+            char c = text.charAt(i);
+            if (!Character.isSurrogate(c)) {
+                return c;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < text.length()
+                    && Character.isLowSurrogate(text.charAt(i + 1))) {
+                return Character.toCodePoint(c, text.charAt(i + 1));
+            }
+            return '?';
+        }
+    }
+
+    /**
+     * One JSON object per line
+     */
+    private static class JsonEncoder extends Encoder {
+
+        private boolean firstField;
+
+        JsonEncoder(WritableByteChannel channel, int bufferSize) {
+            super(channel, bufferSize);
+        }
+
+        @Override
+        void startRecord() {
+            writeByte('{');
+            firstField = true;
+        }
+
+        @Override
+        void endRecord() {
+            writeByte('}');
+            writeByte('\n');
+        }
+
+        private void name(String field) {
+            if (!firstField) {
+                writeByte(',');
+            }
+            firstField = false;
+            writeByte('"');
+            writeAscii(field); // field names are plain identifiers
+            writeByte('"');
+            writeByte(':');
+        }
+
+        @Override
+        public void visitInt(String field, int value) {
+            name(field);
+            writeInt(value);
+        }
+
+        @Override
+        public void visitDouble(String field, double value) {
+            name(field);
+            if (Double.isFinite(value)) {
+                writeDouble(value);
+            } else {
+                writeAscii("null"); // JSON has no NaN or Infinity
+            }
+        }
+
+        @Override
+        public void visitBoolean(String field, boolean value) {
+            name(field);
+            writeBoolean(value);
+        }
+
+        @Override
+        public void visitString(String field, String value) {
+            name(field);
+            writeString(value);
+        }
+
+        @Override
+        public void visitEnum(String field, Enum<?> value) {
+            name(field);
+            writeString(value == null ? null : value.name());
+        }
+
+        @Override
+        void visitStrings(String field, String[] values) {
+            name(field);
+            writeByte('[');
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeString(values[i]);
+            }
+            writeByte(']');
+        }
+
+        private void writeString(String value) {
+            if (value == null) {
+                writeAscii("null");
+                return;
+            }
+            writeByte('"');
+            for (int i = 0; i < value.length(); i++) {
+                int c = codePointAt(value, i);
+                if (c == '"' || c == '\\') {
+                    writeByte('\\');
+                    writeByte(c);
+                } else if (c < 0x20) {
+                    writeControl(c);
+                } else {
+                    writeCodePoint(c);
+                    if (c >= 0x10000) {
+                        i++; // low surrogate already encoded
+                    }
+                }
+            }
+            writeByte('"');
+        }
+
+        private void writeControl(int c) {
+            ensure(6);
+            put('\\');
+            switch (c) {
+                case '\n': put('n'); break;
+                case '\r': put('r'); break;
+                case '\t': put('t'); break;
+                case '\b': put('b'); break;
+                case '\f': put('f'); break;
+                default:
+                    put('u');
+                    put('0');
+                    put('0');
+                    put(HEX[c >> 4]);
+                    put(HEX[c & 0xF]);
+            }
+        }
+    }
+
+    /**
+     * RFC 4180 CSV with the fixed CSV_COLUMNS header
+     */
+    private static class CsvEncoder extends Encoder {
+
+        private int separators; // commas written in the current row
+        private int nextColumn; // columns before this one are already written
+
+        CsvEncoder(WritableByteChannel channel, int bufferSize) {
+            super(channel, bufferSize);
+        }
+
+        @Override
+        void begin() {
+            for (int i = 0; i < CSV_COLUMNS.length; i++) {
+                if (i > 0) {
+                    writeByte(',');
+                }
+                writeAscii(CSV_COLUMNS[i]);
+            }
+            writeByte('\n');
+        }
+
+        @Override
+        void startRecord() {
+            separators = 0;
+            nextColumn = 0;
+        }
+
+        @Override
+        void endRecord() {
+            separate(CSV_COLUMNS.length - 1); // empty cells up to the end of the row
+            writeByte('\n');
+        }
+
+        // Move to the field's column; skipped columns stay empty
+        private void name(String field) {
+            int column = columnOf(field);
+            separate(column);
+            nextColumn = column + 1;
+        }
+
+        private void separate(int count) {
+            for (; separators < count; separators++) {
+                writeByte(',');
+            }
+        }
+
+        // Fields arrive in header order, so the search starts at the current column
+        // (field names are literals, so the identity check almost always hits)
+        private int columnOf(String field) {
+            for (int i = nextColumn; i < CSV_COLUMNS.length; i++) {
+                if (CSV_COLUMNS[i] == field) {
+                    return i;
+                }
+            }
+            for (int i = nextColumn; i < CSV_COLUMNS.length; i++) {
+                if (CSV_COLUMNS[i].equals(field)) {
+                    return i;
+                }
+            }
+            throw new IllegalStateException("Field '" + field +
+                    "' has no CSV column after column " + nextColumn + " (CSV_COLUMNS out of date?)");
+        }
+
+        @Override
+        public void visitInt(String field, int value) {
+            name(field);
+            writeInt(value);
+        }
+
+        @Override
+        public void visitDouble(String field, double value) {
+            name(field);
+            writeDouble(value);
+        }
+
+        @Override
+        public void visitBoolean(String field, boolean value) {
+            name(field);
+            writeBoolean(value);
+        }
+
+        @Override
+        public void visitString(String field, String value) {
+            name(field);
+            if (value != null) {
+                writeCell(value);
+            }
+        }
+
+        @Override
+        public void visitEnum(String field, Enum<?> value) {
+            name(field);
+            if (value != null) {
+                writeAscii(value.name());
+            }
+        }
+
+        // All values in one cell, separated by "; "
+        @Override
+        void visitStrings(String field, String[] values) {
+            name(field);
+            boolean quote = false;
+            for (String value : values) {
+                quote |= needsQuotes(value);
+            }
+            if (quote) {
+                writeByte('"');
+            }
+            for (int i = 0; i < values.length; i++) {
+                if (i > 0) {
+                    writeAscii("; ");
+                }
+                writeCharacters(values[i], quote);
+            }
+            if (quote) {
+                writeByte('"');
+            }
+        }
+
+        private void writeCell(String value) {
+            boolean quote = needsQuotes(value);
+            if (quote) {
+                writeByte('"');
+            }
+            writeCharacters(value, quote);
+            if (quote) {
+                writeByte('"');
+            }
+        }
+
+        private static boolean needsQuotes(String value) {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private void writeCharacters(String value, boolean quoted) {
+            for (int i = 0; i < value.length(); i++) {
+                int c = codePointAt(value, i);
+                if (c == '"' && quoted) {
+                    writeByte('"'); // "" inside a quoted cell
+                }
+                writeCodePoint(c);
+                if (c >= 0x10000) {
+                    i++;
+                }
+            }
+        }
+    }
+}
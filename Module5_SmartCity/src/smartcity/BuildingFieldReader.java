@@ -0,0 +1,20 @@
+package smartcity;
+
+/**
+ * MODULE 5: BuildingFieldReader - Source of field values for restoring a building
+ *
+ * Counterpart of BuildingFieldVisitor: the restore constructors read the
+ * fields back in exactly the order visitFields() wrote them.
+ */
+interface BuildingFieldReader {
+
+    int readInt();
+
+    double readDouble();
+
+    boolean readBoolean();
+
+    String readString();
+
+    <E extends Enum<E>> E readEnum(E[] values);
+}
@@ -0,0 +1,21 @@
+package smartcity;
+
+/**
+ * MODULE 5: BuildingFieldVisitor - Walks the persistent fields of a building
+ *
+ * AbstractBuilding.visitFields() calls one method per field, always in
+ * the same order. A writer (binary snapshot, export) only has to
+ * implement this interface instead of knowing every subclass.
+ */
+interface BuildingFieldVisitor {
+
+    void visitInt(String field, int value);
+
+    void visitDouble(String field, double value);
+
+    void visitBoolean(String field, boolean value);
+
+    void visitString(String field, String value);
+
+    void visitEnum(String field, Enum<?> value);
+}
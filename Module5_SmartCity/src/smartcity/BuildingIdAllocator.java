@@ -0,0 +1,62 @@
+package smartcity;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MODULE 5: BuildingIdAllocator - Lock-free unique building IDs
+ *
+ * This demonstrates:
+ * - ATOMICLONG: threads reserve a whole BLOCK of IDs with one getAndAdd
+ * - THREADLOCAL: IDs inside a reserved block are handed out without
+ *   touching any shared variable
+ * - LONGADDER: a counter that many threads can increment without contention
+ *
+ * IDs are always unique but may have gaps (an unused part of a block is
+ * never handed out). A single thread still gets 1, 2, 3, ...
+ */
+class BuildingIdAllocator {
+
+    static final int BLOCK_SIZE = 64;
+
+    private final AtomicLong nextBlockStart = new AtomicLong(1);
+    private final LongAdder allocated = new LongAdder();
+
+    // Highest ID taken by a restored building (IDs up to it are never handed out)
+    private final AtomicLong reservedUpTo = new AtomicLong(0);
+
+    // Per thread: { next ID, end of block (exclusive) }
+    private final ThreadLocal<long[]> block = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * Next unique ID - only touches shared state once per BLOCK_SIZE calls
+     */
+    public long next() {
+        long[] range = block.get();
+        while (range[0] == range[1] || range[0] <= reservedUpTo.get()) {
+            long start = nextBlockStart.getAndAdd(BLOCK_SIZE);
+            range[0] = start;
+            range[1] = start + BLOCK_SIZE;
+        }
+        allocated.increment();
+        return range[0]++;
+    }
+
+    /**
+     * Reserve an ID that already exists (a building loaded from a snapshot),
+     * so next() only hands out larger IDs from now on
+     */
+    public void ensureAbove(long id) {
+        // Move the block start first: a thread that sees the new reservation
+        // must also get a block beyond it
+        nextBlockStart.accumulateAndGet(id + 1, Math::max);
+        reservedUpTo.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * Total number of IDs handed out so far
+     */
+    public long allocatedCount() {
+        return allocated.sum();
+    }
+}
@@ -0,0 +1,224 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MODULE 5: BuildingIngestPipeline - Bounded bulk loading of buildings
+ *
+ * This demonstrates:
+ * - PRODUCER/CONSUMER with a bounded ARRAYBLOCKINGQUEUE: any number of
+ *   threads submit buildings; submit() blocks while the queue is full
+ *   (BACKPRESSURE), so producers can never run ahead of the store
+ * - BATCHING: one consumer thread drains up to 'batchSize' buildings at a
+ *   time, validates them outside any lock and adds them with a single
+ *   BuildingManager.addBatch() call (one lock acquisition per batch)
+ * - One report at the end instead of output per building
+ * - An IN-FLIGHT COUNT of running submit() calls: the consumer only stops
+ *   once the pipeline is closed, no submit() is in progress and the queue
+ *   is empty, so a building that was accepted is never silently dropped
+ *
+ * IDs need no extra step here: they are taken from per-thread blocks
+ * when each building is constructed (see BuildingIdAllocator).
+ *
+ * Example:
+ *   BuildingIngestPipeline pipeline = new BuildingIngestPipeline(manager);
+ *   pipeline.start();
+ *   ... producers call pipeline.submit(building) ...
+ *   IngestReport report = pipeline.finish(); // waits and prints the report
+ */
+public class BuildingIngestPipeline {
+
+    public static final int DEFAULT_QUEUE_CAPACITY = 8192;
+    public static final int DEFAULT_BATCH_SIZE = 1024;
+
+    private static final long POLL_MILLIS = 20;
+
+    private final BuildingManager manager;
+    private final ArrayBlockingQueue<AbstractBuilding> queue;
+    private final int batchSize;
+    private final IngestReport report = new IngestReport();
+
+    private final Thread consumer;
+    private volatile boolean closed;
+    // submit() calls between their 'closed' check and the end of their offer()
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private volatile RuntimeException failure;
+    private long startNanos;
+
+    public BuildingIngestPipeline(BuildingManager manager) {
+        this(manager, DEFAULT_QUEUE_CAPACITY, DEFAULT_BATCH_SIZE);
+    }
+
+    public BuildingIngestPipeline(BuildingManager manager, int queueCapacity, int batchSize) {
+        if (queueCapacity <= 0 || batchSize <= 0) {
+            throw new IllegalArgumentException("Queue capacity and batch size must be positive");
+        }
+        this.manager = manager;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.batchSize = batchSize;
+        this.consumer = new Thread(this::consume, "building-ingest");
+    }
+
+    /**
+     * Start the consumer thread
+     */
+    public synchronized void start() {
+        if (consumer.getState() != Thread.State.NEW) {
+            throw new IllegalStateException("Pipeline has already been started");
+        }
+        startNanos = System.nanoTime();
+        consumer.start();
+    }
+
+    /**
+     * Queue a building, blocking while the queue is full (backpressure)
+     */
+    public void submit(AbstractBuilding building) throws InterruptedException {
+        // Counted BEFORE 'closed' is read: a consumer that saw closed == true
+        // and no submit in flight can never miss this building
+        inFlight.incrementAndGet();
+        try {
+            if (failure != null) {
+                throw new IllegalStateException("Pipeline consumer failed", failure);
+            }
+            if (closed) {
+                throw new IllegalStateException("Pipeline is already finished");
+            }
+            // Wait in short steps, so a producer never stays blocked on a
+            // queue that a failed consumer will not drain any more
+            while (!queue.offer(building, POLL_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (failure != null) {
+                    throw new IllegalStateException("Pipeline consumer failed", failure);
+                }
+            }
+        } finally {
+            inFlight.decrementAndGet();
+        }
+    }
+
+    /**
+     * Stop accepting buildings, wait until the queue is drained and print
+     * the report once
+     */
+    public IngestReport finish() throws InterruptedException {
+        finishQuietly();
+        report.display();
+        return report;
+    }
+
+    /**
+     * finish() without printing (for callers that add to the report first)
+     */
+    IngestReport finishQuietly() throws InterruptedException {
+        synchronized (this) {
+            if (consumer.getState() == Thread.State.NEW) {
+                // Nothing would ever drain the queue
+                throw new IllegalStateException("Pipeline has not been started");
+            }
+        }
+        closed = true;
+        consumer.join();
+        if (failure != null) {
+            // Buildings queued after the consumer stopped are reported, not lost
+            reportLeftovers("not added: pipeline consumer failed");
+        }
+        report.setElapsedNanos(System.nanoTime() - startNanos);
+        if (failure != null) {
+            throw new IllegalStateException("Pipeline consumer failed", failure);
+        }
+        return report;
+    }
+
+    // CONSUMER loop: take a batch, validate it, add it in one call
+    private void consume() {
+        ArrayList<AbstractBuilding> batch = new ArrayList<>(batchSize);
+        ArrayList<AbstractBuilding> valid = new ArrayList<>(batchSize);
+        try {
+            // Order matters: closed, then in-flight submits, then the queue
+            while (!closed || inFlight.get() > 0 || !queue.isEmpty()) {
+                AbstractBuilding first = queue.poll(POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+
+                // Validation needs no lock - only valid buildings reach the manager
+                for (AbstractBuilding building : batch) {
+                    String problem = validate(building);
+                    if (problem == null) {
+                        valid.add(building);
+                    } else {
+                        report.invalid(building, problem);
+                    }
+                }
+
+                manager.addBatch(valid, report);
+                report.batchDone();
+                batch.clear();
+                valid.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fail(new IllegalStateException("Pipeline consumer was interrupted", e));
+        } catch (RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * The consumer stops: record why, refuse new buildings and unblock
+     * producers waiting in submit(), so finish() reports the failure
+     */
+    private void fail(RuntimeException e) {
+        failure = e;
+        closed = true;
+        reportLeftovers("not added: pipeline consumer failed");
+    }
+
+    /**
+     * Report every building still queued, waiting for submit() calls that
+     * are still running (they see 'failure' within POLL_MILLIS)
+     */
+    private void reportLeftovers(String problem) {
+        ArrayList<AbstractBuilding> leftovers = new ArrayList<>();
+        do {
+            queue.drainTo(leftovers);
+            for (AbstractBuilding building : leftovers) {
+                report.invalid(building, problem);
+            }
+            leftovers.clear();
+            if (inFlight.get() > 0) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        } while (inFlight.get() > 0 || !queue.isEmpty());
+    }
+
+    /**
+     * Same rules as the interactive add forms; returns the problem or null
+     * (no exception per record - bad rows are common in bulk feeds)
+     */
+    static String validate(AbstractBuilding building) {
+        if (building.getName() == null || building.getName().trim().isEmpty()) {
+            return "name cannot be empty";
+        }
+        if (building.getFloors() <= 0) {
+            return "number of floors must be greater than 0";
+        }
+        if (!(building.getArea() > 0) || !Double.isFinite(building.getArea())) {
+            return "area must be a finite number greater than 0";
+        }
+        if (building.getCapacity() <= 0) {
+            return "capacity must be greater than 0";
+        }
+        return null;
+    }
+}
@@ -1,49 +1,491 @@
 package smartcity;
 
 import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
 
 /**
- * MODULE 5: BuildingManager with ArrayList
+ * MODULE 5: BuildingManager with a chunked slot store
  *
  * This demonstrates:
- * - ARRAYLIST usage (replacing fixed array)
- * - ArrayList methods: add, get, set, remove, size, isEmpty
+ * - Chunked SLOT store (replacing the ArrayList) with O(1) remove
+ * - List-style methods: add, get, update, remove, size, isEmpty
  * - ITERATOR usage
  * - ENHANCED FOR LOOP (for-each)
  * - EXCEPTION HANDLING with try-catch
  * - Throwing CUSTOM EXCEPTIONS
+ * - HASHMAP index for constant-time lookup by ID
+ * - ENUMMAP secondary indexes for type and status queries
+ * - TRIE name index for exact, prefix and fuzzy search
+ * - TREEMAP range indexes over capacity, total area and floors
+ * - Uniform GRID spatial index for nearest / radius queries
+ * - BITSET capability index addressed by building slot
+ * - Composable QUERY builder that picks the most selective index
+ * - Configurable CAPACITY limit (setMaxBuildings)
+ * - COLUMNAR (struct-of-arrays) copy of numeric attributes for aggregates
+ * - Incrementally maintained city STATISTICS (O(1) reads)
+ * - Optional WRITE-AHEAD LOG of every mutation (see MutationLog)
  */
-public class BuildingManager {
+public class BuildingManager implements BuildingChangeListener {
 
-    // ARRAYLIST to store buildings (dynamic size)
-    private ArrayList<AbstractBuilding> buildings;
-    private static final int MAX_BUILDINGS = 50;
+    // Default limit on the number of buildings (see setMaxBuildings)
+    public static final int DEFAULT_MAX_BUILDINGS = 50;
+
+    // SLOT STORE for buildings (grows in chunks, reuses freed slots)
+    private BuildingStore buildings;
+    private int maxBuildings;
+
+    // HASHMAP index: building ID -> building (kept in sync with the slot store)
+    private HashMap<String, AbstractBuilding> buildingsById;
+
+    // ENUMMAP indexes: one insertion-ordered bucket per type / per status
+    private EnumMap<BuildingType, LinkedHashSet<AbstractBuilding>> buildingsByType;
+    private EnumMap<BuildingStatus, LinkedHashSet<AbstractBuilding>> buildingsByStatus;
+
+    // TRIE index over case-folded names
+    private BuildingNameIndex nameIndex;
+
+    // TREEMAP range indexes (value -> buildings)
+    private BuildingRangeIndex capacityIndex;
+    private BuildingRangeIndex areaIndex;
+    private BuildingRangeIndex floorsIndex;
+
+    // GRID index over located buildings
+    private SpatialGridIndex spatialIndex;
+
+    // BITSET index: one bitmap per capability, bit = slot
+    private CapabilityIndex capabilityIndex;
+
+    // COLUMNS: primitive arrays by slot for city-wide aggregates
+    private BuildingColumns columns;
+
+    // RUNNING AGGREGATES updated on every mutation
+    private CityStatistics statistics;
+
+    // LONGADDER: people inside all buildings (striped, so concurrent
+    // enter/exit events on different buildings do not contend)
+    private final LongAdder totalOccupancy = new LongAdder();
+
+    // WRITE-AHEAD LOG of every mutation (null = not persisted)
+    private volatile MutationLog mutationLog;
 
     // Constructor
     public BuildingManager() {
-        buildings = new ArrayList<>(); // Initialize ArrayList
+        this(DEFAULT_MAX_BUILDINGS);
+    }
+
+    // Constructor with a custom capacity limit
+    public BuildingManager(int maxBuildings) {
+        if (maxBuildings <= 0) {
+            throw new IllegalArgumentException("Maximum number of buildings must be greater than 0");
+        }
+        this.maxBuildings = maxBuildings;
+        buildings = new BuildingStore();
+        buildingsById = new HashMap<>();
+
+        buildingsByType = new EnumMap<>(BuildingType.class);
+        for (BuildingType type : BuildingType.values()) {
+            buildingsByType.put(type, new LinkedHashSet<>());
+        }
+
+        buildingsByStatus = new EnumMap<>(BuildingStatus.class);
+        for (BuildingStatus status : BuildingStatus.values()) {
+            buildingsByStatus.put(status, new LinkedHashSet<>());
+        }
+
+        nameIndex = new BuildingNameIndex();
+
+        capacityIndex = new BuildingRangeIndex();
+        areaIndex = new BuildingRangeIndex();
+        floorsIndex = new BuildingRangeIndex();
+
+        spatialIndex = new SpatialGridIndex();
+
+        capabilityIndex = new CapabilityIndex();
+        columns = new BuildingColumns();
+        statistics = new CityStatistics();
+    }
+
+    /**
+     * Store the building, reusing freed slots first
+     */
+    private void assignSlot(AbstractBuilding building) {
+        building.setSlot(buildings.add(building));
+    }
+
+    private void releaseSlot(AbstractBuilding building) {
+        columns.clear(building.getSlot());
+        buildings.remove(building.getSlot());
+        building.setSlot(-1);
+    }
+
+    /**
+     * Convert a bitmap of slots into the list of buildings
+     */
+    private ArrayList<AbstractBuilding> buildingsInSlots(BitSet slots) {
+        ArrayList<AbstractBuilding> result = new ArrayList<>(slots.cardinality());
+        for (int slot = slots.nextSetBit(0); slot >= 0; slot = slots.nextSetBit(slot + 1)) {
+            result.add(buildings.get(slot));
+        }
+        return result;
+    }
+
+    /**
+     * Why a building cannot be indexed, or null if it can.
+     * Checked before anything is touched, so a rejected building leaves no trace.
+     */
+    private String indexingProblem(AbstractBuilding building) {
+        if (building.getName() == null || building.getName().trim().isEmpty()) {
+            return "Building " + building.getBuildingId() + " has no name";
+        }
+        if (building.getBuildingType() == null) {
+            return "Building " + building.getBuildingId() + " has no type";
+        }
+        // Derived values are indexed too - a subclass must be able to compute them
+        try {
+            if (!Double.isFinite(building.calculateTotalArea())
+                    || !Double.isFinite(building.calculateMaintenanceCost())) {
+                return "Building " + building.getBuildingId() + " has no valid area or maintenance cost";
+            }
+        } catch (RuntimeException e) {
+            return "Building " + building.getBuildingId() + " cannot be indexed: " + e;
+        }
+        // A building reports its changes to one manager only - a second one
+        // would never hear about them and its indexes would go stale
+        BuildingChangeListener owner = building.getChangeListener();
+        if (owner != null && owner != this) {
+            return "Building " + building.getBuildingId() + " is already managed by another city";
+        }
+        return null;
+    }
+
+    /**
+     * Add building to all indexes and start listening for its changes
+     * (validated with indexingProblem() first)
+     */
+    private void indexBuilding(AbstractBuilding building) {
+        assignSlot(building);
+        int slot = building.getSlot();
+        boolean counted = false;
+        try {
+            // Values are read once (into the columns) - status may change concurrently
+            columns.set(slot, building);
+            capabilityIndex.set(slot, building);
+            statistics.buildingAdded(columns, slot);
+            counted = true;
+            buildingsById.put(building.getBuildingId(), building);
+            buildingsByType.get(building.getBuildingType()).add(building);
+            buildingsByStatus.get(columns.getStatus(slot)).add(building);
+            nameIndex.add(building);
+            capacityIndex.add(building, columns.getCapacity(slot));
+            areaIndex.add(building, columns.getTotalArea(slot));
+            floorsIndex.add(building, columns.getFloors(slot));
+            if (building.hasLocation()) {
+                spatialIndex.add(building, building.getLocationX(), building.getLocationY());
+            }
+        } catch (RuntimeException e) {
+            // e.g. a subclass whose calculateTotalArea() fails - undo what was done
+            discardPartialIndex(building, counted);
+            throw e;
+        }
+        building.openForAdmission();
+        building.setChangeListener(this);
+        // A status change made before the listener was attached was not reported
+        syncStatus(building);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.logPut(building);
+        }
+    }
+
+    /**
+     * ROLLBACK of an indexBuilding() that failed half way: every index
+     * removal below is a no-op for a building that was never added to it
+     */
+    private void discardPartialIndex(AbstractBuilding building, boolean counted) {
+        if (buildingsById.get(building.getBuildingId()) == building) {
+            buildingsById.remove(building.getBuildingId());
+        }
+        for (LinkedHashSet<AbstractBuilding> bucket : buildingsByType.values()) {
+            bucket.remove(building);
+        }
+        for (LinkedHashSet<AbstractBuilding> bucket : buildingsByStatus.values()) {
+            bucket.remove(building);
+        }
+        nameIndex.remove(building, building.getName());
+        capacityIndex.remove(building, columns.getCapacity(building.getSlot()));
+        areaIndex.remove(building, columns.getTotalArea(building.getSlot()));
+        floorsIndex.remove(building, columns.getFloors(building.getSlot()));
+        if (building.hasLocation()) {
+            spatialIndex.remove(building, building.getLocationX(), building.getLocationY());
+        }
+        if (counted) {
+            statistics.buildingRemoved(columns, building.getSlot());
+        }
+        capabilityIndex.clear(building.getSlot());
+        releaseSlot(building);
+    }
+
+    /**
+     * Remove building from all indexes and stop listening for its changes
+     */
+    private void unindexBuilding(AbstractBuilding building) {
+        buildingsById.remove(building.getBuildingId());
+        BuildingStatus status = columns.getStatus(building.getSlot()); // status it is indexed under
+        buildingsByType.get(building.getBuildingType()).remove(building);
+        buildingsByStatus.get(status).remove(building);
+        nameIndex.remove(building, building.getName());
+        // Values it is indexed under (see BuildingColumns)
+        capacityIndex.remove(building, columns.getCapacity(building.getSlot()));
+        areaIndex.remove(building, columns.getTotalArea(building.getSlot()));
+        floorsIndex.remove(building, columns.getFloors(building.getSlot()));
+        if (building.hasLocation()) {
+            spatialIndex.remove(building, building.getLocationX(), building.getLocationY());
+        }
+        capabilityIndex.clear(building.getSlot());
+        statistics.buildingRemoved(columns, building.getSlot());
+        releaseSlot(building);
+        totalOccupancy.add(-building.closeForAdmission()); // occupants leave with the building
+        if (building.getChangeListener() == this) {
+            building.setChangeListener(null);
+        }
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.logRemove(building.getBuildingId());
+        }
+    }
+
+    /**
+     * Called by AbstractBuilding.changeStatus() - moves building to its new status bucket
+     */
+    @Override
+    public void statusChanged(AbstractBuilding building, BuildingStatus oldStatus) {
+        syncStatus(building);
+        commitLog();
+    }
+
+    /**
+     * Move a building from the status it is indexed under to its current
+     * status. Status changes are CAS-based and their callbacks may arrive
+     * out of order, so the indexed status (kept in the columns) is used as
+     * the old value instead of the one passed by the callback.
+     */
+    private void syncStatus(AbstractBuilding building) {
+        BuildingStatus indexed = columns.getStatus(building.getSlot());
+        BuildingStatus current = building.getStatus();
+        if (indexed == current) {
+            return;
+        }
+        buildingsByStatus.get(indexed).remove(building);
+        buildingsByStatus.get(current).add(building);
+        capabilityIndex.update(building.getSlot(), building, BuildingCapability.USABLE);
+        columns.updateStatus(building.getSlot(), current);
+        statistics.statusChanged(indexed, current);
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.logStatus(building, current);
+        }
     }
 
     /**
-     * ADD method - adds building to ArrayList
-     * Demonstrates: ArrayList.add(), throwing custom exception
+     * Called by AbstractBuilding.setName() - re-indexes building under its new name
+     */
+    @Override
+    public void nameChanged(AbstractBuilding building, String oldName) {
+        nameIndex.remove(building, oldName);
+        nameIndex.add(building);
+        logChanged(building);
+    }
+
+    /**
+     * Called by the AbstractBuilding setters - moves building within the range indexes.
+     * Like syncStatus(), the old values are the ones kept in the columns
+     * (what the building is indexed under), not the ones passed by the callback.
+     */
+    @Override
+    public void dimensionsChanged(AbstractBuilding building, int callbackFloors,
+                                  double callbackTotalArea, int callbackCapacity) {
+        int slot = building.getSlot();
+        int oldFloors = columns.getFloors(slot);
+        double oldTotalArea = columns.getTotalArea(slot);
+        int oldCapacity = columns.getCapacity(slot);
+        double oldCost = columns.getMaintenanceCost(slot);
+        columns.updateDimensions(slot, building);
+
+        if (oldCapacity != columns.getCapacity(slot)) {
+            capacityIndex.remove(building, oldCapacity);
+            capacityIndex.add(building, columns.getCapacity(slot));
+        }
+        if (oldTotalArea != columns.getTotalArea(slot)) {
+            areaIndex.remove(building, oldTotalArea);
+            areaIndex.add(building, columns.getTotalArea(slot));
+        }
+        if (oldFloors != columns.getFloors(slot)) {
+            floorsIndex.remove(building, oldFloors);
+            floorsIndex.add(building, columns.getFloors(slot));
+        }
+        // Accessibility features may depend on the building's dimensions
+        capabilityIndex.update(slot, building, BuildingCapability.FULLY_ACCESSIBLE);
+        statistics.adjust(columns.getTotalArea(slot) - oldTotalArea,
+                columns.getCapacity(slot) - oldCapacity,
+                columns.getMaintenanceCost(slot) - oldCost);
+        logChanged(building);
+    }
+
+    /**
+     * Called by subclasses when a cost-relevant attribute changes
+     */
+    @Override
+    public void maintenanceCostChanged(AbstractBuilding building) {
+        double oldCost = columns.getMaintenanceCost(building.getSlot());
+        columns.updateMaintenanceCost(building.getSlot(), building);
+        statistics.adjust(0, 0, columns.getMaintenanceCost(building.getSlot()) - oldCost);
+        logChanged(building);
+    }
+
+    /**
+     * Called by subclasses when an attribute without an index changes
+     */
+    @Override
+    public void attributesChanged(AbstractBuilding building) {
+        logChanged(building);
+    }
+
+    /**
+     * Called by AbstractBuilding.setLocation() - moves building within the grid
+     */
+    @Override
+    public void locationChanged(AbstractBuilding building, boolean wasLocated,
+                                double oldX, double oldY) {
+        if (wasLocated) {
+            spatialIndex.remove(building, oldX, oldY);
+        }
+        spatialIndex.add(building, building.getLocationX(), building.getLocationY());
+        logChanged(building);
+    }
+
+    // MUTATION LOG
+
+    /**
+     * Attached by MutationLog.recover() once the log has been replayed
+     */
+    void setMutationLog(MutationLog mutationLog) {
+        this.mutationLog = mutationLog;
+    }
+
+    public MutationLog getMutationLog() {
+        return mutationLog;
+    }
+
+    // Attribute change: log the whole building (absolute values) and commit
+    private void logChanged(AbstractBuilding building) {
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.logPut(building);
+        }
+        commitLog();
+    }
+
+    /**
+     * Wait until the records logged by this thread are durable.
+     * Called at the end of every mutation; ConcurrentBuildingManager
+     * defers it until its write lock is released, so that concurrent
+     * mutations can share one fsync (group commit).
+     */
+    protected void commitLog() {
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.commit();
+        }
+    }
+
+    // LOG REPLAY (called by MutationLog) - absolute values, so applying a
+    // record twice has the same effect as applying it once.
+    // No capacity check: the log is the record of what the city contained.
+
+    void applyPut(AbstractBuilding building) {
+        AbstractBuilding existing = buildingsById.get(building.getBuildingId());
+        if (existing != null) {
+            unindexBuilding(existing);
+        }
+        indexBuilding(building);
+    }
+
+    void applyRemove(String buildingId) {
+        AbstractBuilding existing = buildingsById.get(buildingId);
+        if (existing != null) {
+            unindexBuilding(existing);
+        }
+    }
+
+    void applyClear() {
+        dropAllBuildings();
+    }
+
+    void applyStatus(String buildingId, BuildingStatus status) {
+        try {
+            // Goes through the listener like any other status change
+            findBuildingById(buildingId).restoreStatus(status);
+        } catch (BuildingNotFoundException e) {
+            // Removed later in the log - nothing to do
+        }
+    }
+
+    public int getMaxBuildings() {
+        return maxBuildings;
+    }
+
+    /**
+     * Change the capacity limit (buildings already added are kept)
+     */
+    public void setMaxBuildings(int maxBuildings) {
+        if (maxBuildings > 0) {
+            this.maxBuildings = maxBuildings;
+        }
+    }
+
+    /**
+     * ADD method - adds building to the slot store
+     * Demonstrates: throwing custom exception
      */
     public void addBuilding(AbstractBuilding building) throws CityCapacityException {
         // TRY-CATCH for exception handling
         try {
             // Check if city is at capacity
-            if (buildings.size() >= MAX_BUILDINGS) {
+            if (buildings.size() >= maxBuildings) {
                 // THROW custom exception
                 throw new CityCapacityException(
                         "Cannot add building - City is at maximum capacity!",
                         buildings.size(),
-                        MAX_BUILDINGS
+                        maxBuildings
                 );
             }
 
-            // ArrayList ADD method
-            buildings.add(building);
+            // Each ID may only be registered once, otherwise the index would be ambiguous
+            if (buildingsById.containsKey(building.getBuildingId())) {
+                System.err.println("Building " + building.getBuildingId() + " is already registered!");
+                return;
+            }
+
+            // VALIDATE first - nothing is indexed for a rejected building
+            String problem = indexingProblem(building);
+            if (problem != null) {
+                System.err.println(problem);
+                return;
+            }
+
+            // Stores the building in a free slot and updates every index
+            // (rolled back by indexBuilding itself if it fails)
+            indexBuilding(building);
+            commitLog();
             System.out.println("✓ Building added successfully!");
             System.out.println("Total buildings in city: " + buildings.size());
 
@@ -51,18 +493,54 @@ public class BuildingManager {
             // Re-throw to be handled by caller
             throw e;
         } catch (Exception e) {
-            // Catch any unexpected exceptions
+            // Catch any unexpected exceptions (the building has not been added)
             System.err.println("Unexpected error adding building: " + e.getMessage());
         }
     }
 
     /**
-     * GET method - retrieves building by index
-     * Demonstrates: ArrayList.get(), exception handling
+     * BATCH ADD used by BuildingIngestPipeline: no output per building and
+     * no exceptions - every outcome is counted in the report instead
+     */
+    void addBatch(List<AbstractBuilding> batch, IngestReport report) {
+        addBatch(batch, report, maxBuildings);
+    }
+
+    /**
+     * BATCH RESTORE used by CitySnapshotFile.load: like addBatch, but without
+     * the capacity check - a snapshot is the record of what the city
+     * contained, so restoring it must not silently drop buildings
+     * (the same reasoning as applyPut for the mutation log)
+     */
+    void restoreBatch(List<AbstractBuilding> batch, IngestReport report) {
+        addBatch(batch, report, Integer.MAX_VALUE);
+    }
+
+    private void addBatch(List<AbstractBuilding> batch, IngestReport report, int capacity) {
+        for (AbstractBuilding building : batch) {
+            if (buildings.size() >= capacity) {
+                report.overCapacity(building);
+            } else if (buildingsById.containsKey(building.getBuildingId())) {
+                report.duplicate(building);
+            } else {
+                String problem = indexingProblem(building);
+                if (problem != null) {
+                    report.invalid(building, problem);
+                } else {
+                    indexBuilding(building);
+                    report.accepted();
+                }
+            }
+        }
+        commitLog(); // one commit for the whole batch
+    }
+
+    /**
+     * GET method - retrieves building by index (position in slot order)
+     * Demonstrates: exception handling
      */
     public AbstractBuilding getBuilding(int index) throws BuildingNotFoundException {
         try {
-            // ArrayList GET method
             if (index < 0 || index >= buildings.size()) {
                 throw new BuildingNotFoundException(
                         "Building not found at index " + index,
@@ -70,7 +548,7 @@ public class BuildingManager {
                 );
             }
 
-            return buildings.get(index);
+            return buildings.get(buildings.slotAt(index));
 
         } catch (BuildingNotFoundException e) {
             throw e;
@@ -84,7 +562,7 @@ public class BuildingManager {
 
     /**
      * REMOVE method - removes building by index
-     * Demonstrates: ArrayList.remove(), exception handling
+     * Demonstrates: O(1) slot removal (no shifting), exception handling
      */
     public void removeBuilding(int index) throws BuildingNotFoundException {
         try {
@@ -94,8 +572,9 @@ public class BuildingManager {
                 );
             }
 
-            AbstractBuilding removed = buildings.get(index);
-            buildings.remove(index); // ArrayList REMOVE method
+            AbstractBuilding removed = buildings.get(buildings.slotAt(index));
+            unindexBuilding(removed); // frees its slot
+            commitLog();
 
             System.out.println("✓ Building removed successfully!");
             System.out.println("Removed: " + removed.getName());
@@ -110,18 +589,20 @@ public class BuildingManager {
 
     /**
      * REMOVE by object
-     * Demonstrates: ArrayList.remove(Object)
+     * Demonstrates: HashMap membership check + O(1) slot removal
      */
     public void removeBuilding(AbstractBuilding building) throws BuildingNotFoundException {
         try {
-            if (!buildings.contains(building)) {
+            // HASHMAP lookup instead of ArrayList.contains() linear scan
+            if (buildingsById.get(building.getBuildingId()) != building) {
                 throw new BuildingNotFoundException(
                         "Building not found in the city",
                         building.getName()
                 );
             }
 
-            buildings.remove(building); // ArrayList REMOVE by object
+            unindexBuilding(building); // frees its slot
+            commitLog();
             System.out.println("✓ Building removed: " + building.getName());
 
         } catch (BuildingNotFoundException e) {
@@ -130,8 +611,8 @@ public class BuildingManager {
     }
 
     /**
-     * SET method - updates building at specific index
-     * Demonstrates: ArrayList.set()
+     * SET method - replaces building at specific index
+     * The new building takes over the slot of the old one
      */
     public void updateBuilding(int index, AbstractBuilding newBuilding)
             throws BuildingNotFoundException {
@@ -142,8 +623,23 @@ public class BuildingManager {
                 );
             }
 
-            AbstractBuilding oldBuilding = buildings.get(index);
-            buildings.set(index, newBuilding); // ArrayList SET method
+            AbstractBuilding oldBuilding = buildings.get(buildings.slotAt(index));
+
+            AbstractBuilding existing = buildingsById.get(newBuilding.getBuildingId());
+            if (existing != null && existing != oldBuilding) {
+                System.err.println("Building " + newBuilding.getBuildingId() + " is already registered!");
+                return;
+            }
+            String problem = indexingProblem(newBuilding);
+            if (problem != null) {
+                System.err.println(problem);
+                return;
+            }
+
+            // The freed slot is reused immediately, so the position is kept
+            unindexBuilding(oldBuilding);
+            indexBuilding(newBuilding);
+            commitLog();
 
             System.out.println("✓ Building updated successfully!");
             System.out.println("Old: " + oldBuilding.getName());
@@ -156,18 +652,16 @@ public class BuildingManager {
 
     /**
      * SIZE method
-     * Demonstrates: ArrayList.size()
      */
     public int getBuildingCount() {
-        return buildings.size(); // ArrayList SIZE method
+        return buildings.size();
     }
 
     /**
      * ISEMPTY method
-     * Demonstrates: ArrayList.isEmpty()
      */
     public boolean isEmpty() {
-        return buildings.isEmpty(); // ArrayList ISEMPTY method
+        return buildings.isEmpty();
     }
 
     /**
@@ -197,7 +691,7 @@ public class BuildingManager {
 
     /**
      * Display buildings using ITERATOR
-     * Demonstrates: ArrayList.iterator(), Iterator usage
+     * Demonstrates: BuildingStore.iterator(), Iterator usage
      */
     public void displayBuildingsWithIterator() {
         if (buildings.isEmpty()) {
@@ -207,7 +701,7 @@ public class BuildingManager {
 
         System.out.println("\n=== Buildings (using Iterator) ===");
 
-        // Get ITERATOR from ArrayList
+        // Get ITERATOR from the store
         Iterator<AbstractBuilding> iterator = buildings.iterator();
 
         int count = 1;
@@ -221,19 +715,13 @@ public class BuildingManager {
     }
 
     /**
-     * Find buildings by type using ENHANCED FOR LOOP
-     * Demonstrates: Filtering with ArrayList and exception handling
+     * Find buildings by type using the ENUMMAP index
+     * Demonstrates: Copying only the matching bucket and exception handling
      */
     public ArrayList<AbstractBuilding> findBuildingsByType(BuildingType type)
             throws BuildingNotFoundException {
-        ArrayList<AbstractBuilding> result = new ArrayList<>();
-
-        // ENHANCED FOR LOOP to filter
-        for (AbstractBuilding building : buildings) {
-            if (building.getBuildingType() == type) {
-                result.add(building);
-            }
-        }
+        // Copy of the type bucket - cost depends on result size, not city size
+        ArrayList<AbstractBuilding> result = new ArrayList<>(buildingsByType.get(type));
 
         if (result.isEmpty()) {
             throw new BuildingNotFoundException(
@@ -245,17 +733,11 @@ public class BuildingManager {
     }
 
     /**
-     * Find buildings by status
+     * Find buildings by status using the ENUMMAP index
      */
     public ArrayList<AbstractBuilding> findBuildingsByStatus(BuildingStatus status)
             throws BuildingNotFoundException {
-        ArrayList<AbstractBuilding> result = new ArrayList<>();
-
-        for (AbstractBuilding building : buildings) {
-            if (building.getStatus() == status) {
-                result.add(building);
-            }
-        }
+        ArrayList<AbstractBuilding> result = new ArrayList<>(buildingsByStatus.get(status));
 
         if (result.isEmpty()) {
             throw new BuildingNotFoundException(
@@ -266,18 +748,103 @@ public class BuildingManager {
         return result;
     }
 
+    /**
+     * Count buildings of a type - O(1) read of the bucket size
+     */
+    public int countBuildingsByType(BuildingType type) {
+        return buildingsByType.get(type).size();
+    }
+
+    /**
+     * Count buildings with a status - O(1) read of the bucket size
+     */
+    public int countBuildingsByStatus(BuildingStatus status) {
+        return buildingsByStatus.get(status).size();
+    }
+
+    /**
+     * Read-only view of the buildings of a type (no copy)
+     */
+    public Collection<AbstractBuilding> viewBuildingsByType(BuildingType type) {
+        return Collections.unmodifiableSet(buildingsByType.get(type));
+    }
+
+    /**
+     * Read-only view of the buildings with a status (no copy)
+     */
+    public Collection<AbstractBuilding> viewBuildingsByStatus(BuildingStatus status) {
+        return Collections.unmodifiableSet(buildingsByStatus.get(status));
+    }
+
+    /**
+     * Count buildings having ALL the given capabilities - bitmap AND + popcount
+     */
+    public int countBuildingsWith(BuildingCapability... required) {
+        return capabilityIndex.count(required);
+    }
+
+    /**
+     * Buildings having ALL the given capabilities (in slot order)
+     */
+    public ArrayList<AbstractBuilding> findBuildingsWith(BuildingCapability... required) {
+        return buildingsInSlots(capabilityIndex.matching(required));
+    }
+
+    /**
+     * Buildings having 'required' but lacking 'missing'
+     * Example: findBuildingsWithout(ACCESSIBLE, FULLY_ACCESSIBLE) = needs improvement
+     */
+    public ArrayList<AbstractBuilding> findBuildingsWithout(BuildingCapability required,
+                                                            BuildingCapability missing) {
+        return buildingsInSlots(capabilityIndex.matchingWithout(required, missing));
+    }
+
+    /**
+     * Start a composable query, e.g.
+     *   manager.query().ofType(BuildingType.HOSPITAL)
+     *          .capacityBetween(500, 2000).limit(10).list()
+     */
+    public BuildingQuery query() {
+        return new BuildingQuery(this);
+    }
+
+    // Package-private access paths used by the BuildingQuery planner
+
+    Iterable<AbstractBuilding> iterateAllBuildings() {
+        return buildings;
+    }
+
+    int countBuildingsByCapacityRange(int minCapacity, int maxCapacity, int limit) {
+        return capacityIndex.count(minCapacity, maxCapacity, limit);
+    }
+
+    int countBuildingsByNamePrefix(String prefix) {
+        return nameIndex.countByPrefix(prefix);
+    }
+
+    Iterable<AbstractBuilding> iterateBuildingsByNamePrefix(String prefix) {
+        return nameIndex.iterateByPrefix(prefix);
+    }
+
+    /**
+     * Lazy walk over the buildings having ALL the given capabilities
+     */
+    Iterable<AbstractBuilding> iterateBuildingsWith(BuildingCapability... required) {
+        BitSet slots = capabilityIndex.matching(required);
+        return () -> slots.stream().mapToObj(buildings::get).iterator();
+    }
+
     /**
      * Search building by name
-     * Demonstrates: String comparison and exception handling
+     * Demonstrates: Case-insensitive trie lookup and exception handling
      */
     public AbstractBuilding findBuildingByName(String name)
             throws BuildingNotFoundException {
         try {
-            // ENHANCED FOR LOOP for searching
-            for (AbstractBuilding building : buildings) {
-                if (building.getName().equalsIgnoreCase(name)) {
-                    return building;
-                }
+            // TRIE lookup - first building registered under this name
+            ArrayList<AbstractBuilding> matches = nameIndex.findExact(name);
+            if (!matches.isEmpty()) {
+                return matches.get(0);
             }
 
             // If not found, throw exception
@@ -295,18 +862,127 @@ public class BuildingManager {
         }
     }
 
+    /**
+     * Find buildings whose name starts with the given text (case-insensitive)
+     * Results are ranked shortest name first, at most 'limit' buildings
+     */
+    public ArrayList<AbstractBuilding> findBuildingsByNamePrefix(String prefix, int limit) {
+        return nameIndex.findByPrefix(prefix, limit);
+    }
+
+    /**
+     * Find buildings whose name is within 'maxEdits' typing mistakes of the
+     * given name (capped at BuildingNameIndex.MAX_EDIT_DISTANCE)
+     * Results are ranked closest match first, at most 'limit' buildings
+     */
+    public ArrayList<AbstractBuilding> findBuildingsBySimilarName(String name, int maxEdits, int limit) {
+        return nameIndex.findSimilar(name, maxEdits, limit);
+    }
+
+    /**
+     * Operator search: exact matches first, then prefix matches,
+     * then fuzzy matches - without duplicates, at most 'limit' buildings
+     */
+    public ArrayList<AbstractBuilding> searchBuildingsByName(String query, int limit) {
+        LinkedHashSet<AbstractBuilding> ranked = new LinkedHashSet<>(nameIndex.findExact(query));
+
+        if (ranked.size() < limit) {
+            ranked.addAll(nameIndex.findByPrefix(query, limit));
+        }
+        if (ranked.size() < limit) {
+            ranked.addAll(nameIndex.findSimilar(query, 2, limit));
+        }
+
+        ArrayList<AbstractBuilding> result = new ArrayList<>(ranked);
+        if (result.size() > limit) {
+            result.subList(limit, result.size()).clear();
+        }
+        return result;
+    }
+
+    /**
+     * RANGE query: buildings with minCapacity <= capacity <= maxCapacity
+     * Returned lazily in ascending capacity order (no list is copied).
+     * Do not add/remove buildings while iterating the result.
+     */
+    public Iterable<AbstractBuilding> findBuildingsByCapacityRange(int minCapacity, int maxCapacity) {
+        return capacityIndex.range(minCapacity, maxCapacity);
+    }
+
+    /**
+     * RANGE query on total area (area per floor * floors)
+     * Use Double.POSITIVE_INFINITY as maxArea for "above minArea" queries.
+     */
+    public Iterable<AbstractBuilding> findBuildingsByAreaRange(double minArea, double maxArea) {
+        return areaIndex.range(minArea, maxArea);
+    }
+
+    /**
+     * RANGE query on number of floors
+     */
+    public Iterable<AbstractBuilding> findBuildingsByFloorRange(int minFloors, int maxFloors) {
+        return floorsIndex.range(minFloors, maxFloors);
+    }
+
+    /**
+     * Build a filter for spatial queries (null type / capability means "any")
+     * capability is an interface such as Serviceable.class or Accessible.class
+     */
+    private static Predicate<AbstractBuilding> spatialFilter(BuildingType type, Class<?> capability) {
+        return building -> (type == null || building.getBuildingType() == type)
+                && (capability == null || capability.isInstance(building));
+    }
+
+    /**
+     * K-NEAREST query: the k closest located buildings to (x, y), nearest first
+     * Example: findNearestBuildings(x, y, 3, BuildingType.HOSPITAL, Serviceable.class)
+     */
+    public ArrayList<AbstractBuilding> findNearestBuildings(double x, double y, int k,
+                                                            BuildingType type, Class<?> capability) {
+        return spatialIndex.nearest(x, y, k, spatialFilter(type, capability));
+    }
+
+    /**
+     * K-NEAREST query with a custom filter
+     * Example: nearest hospital with an emergency room
+     *   findNearestBuildings(x, y, 1, b -> b instanceof ModernHospital
+     *           && ((ModernHospital) b).hasEmergencyRoom())
+     */
+    public ArrayList<AbstractBuilding> findNearestBuildings(double x, double y, int k,
+                                                            Predicate<AbstractBuilding> filter) {
+        return spatialIndex.nearest(x, y, k, filter);
+    }
+
+    /**
+     * RADIUS query: located buildings within 'radius' meters of (x, y), nearest first
+     */
+    public ArrayList<AbstractBuilding> findBuildingsWithinRadius(double x, double y, double radius,
+                                                                 BuildingType type, Class<?> capability) {
+        return spatialIndex.withinRadius(x, y, radius, spatialFilter(type, capability));
+    }
+
     /**
      * Get building by ID
+     * Demonstrates: HashMap.get() - O(1) lookup instead of a linear scan
      */
     public AbstractBuilding findBuildingById(String buildingId)
             throws BuildingNotFoundException {
-        for (AbstractBuilding building : buildings) {
-            if (building.getBuildingId().equals(buildingId)) {
-                return building;
-            }
+        AbstractBuilding building = lookupById(buildingId);
+        if (building != null) {
+            return building;
         }
+        throw buildingNotFound(buildingId);
+    }
+
+    /**
+     * Single read of the ID map (null if absent)
+     */
+    AbstractBuilding lookupById(String buildingId) {
+        return buildingsById.get(buildingId);
+    }
 
-        throw new BuildingNotFoundException(
+    static BuildingNotFoundException buildingNotFound(String buildingId) {
+        return new BuildingNotFoundException(
                 "Building with ID '" + buildingId + "' not found",
                 buildingId
         );
@@ -323,10 +999,8 @@ public class BuildingManager {
                 throw new BuildingNotFoundException("No buildings to calculate maintenance");
             }
 
-            // ENHANCED FOR LOOP
-            for (AbstractBuilding building : buildings) {
-                total += building.calculateMaintenanceCost();
-            }
+            // Running total - O(1)
+            total = statistics.getTotalMaintenanceCost();
 
         } catch (BuildingNotFoundException e) {
             System.err.println(e.getMessage());
@@ -339,6 +1013,146 @@ public class BuildingManager {
         return total;
     }
 
+    /**
+     * Maintenance cost per building type - one loop over the cost and type columns
+     */
+    public EnumMap<BuildingType, Double> calculateMaintenanceByType() {
+        return byType(columns.sumMaintenanceCostByType());
+    }
+
+    /**
+     * Total floor area per building type - one loop over the area and type columns
+     */
+    public EnumMap<BuildingType, Double> calculateAreaByType() {
+        return byType(columns.sumTotalAreaByType());
+    }
+
+    /**
+     * Total capacity per building type - one loop over the capacity and type columns
+     */
+    public EnumMap<BuildingType, Long> calculateCapacityByType() {
+        EnumMap<BuildingType, Long> result = new EnumMap<>(BuildingType.class);
+        long[] sums = columns.sumCapacityByType();
+        for (BuildingType type : BuildingType.values()) {
+            result.put(type, sums[type.ordinal()]);
+        }
+        return result;
+    }
+
+    private static EnumMap<BuildingType, Double> byType(double[] sums) {
+        EnumMap<BuildingType, Double> result = new EnumMap<>(BuildingType.class);
+        for (BuildingType type : BuildingType.values()) {
+            result.put(type, sums[type.ordinal()]);
+        }
+        return result;
+    }
+
+    /**
+     * Count critical infrastructure buildings - O(1) from the running totals
+     */
+    public int countCriticalInfrastructure() {
+        return statistics.getCriticalInfrastructureCount();
+    }
+
+    /**
+     * Copy of the running statistics, including min/max from the range indexes
+     */
+    public CityStatistics getStatistics() {
+        return snapshotStatistics();
+    }
+
+    // Non-overridable so it can be used while a subclass holds its lock
+    private CityStatistics snapshotStatistics() {
+        CityStatistics snapshot = statistics.copy();
+        if (!buildings.isEmpty()) {
+            snapshot.setExtremes((int) capacityIndex.min(), (int) capacityIndex.max(),
+                    areaIndex.min(), areaIndex.max());
+        }
+        return snapshot;
+    }
+
+    /**
+     * CONSISTENCY CHECK: recompute everything by visiting every building and
+     * compare with the running statistics and the columnar store.
+     * Returns a description of each mismatch (empty list = consistent).
+     */
+    public ArrayList<String> verifyStatistics() {
+        ArrayList<String> problems = new ArrayList<>();
+
+        int count = 0;
+        int[] perStatus = new int[BuildingStatus.values().length];
+        int[] perType = new int[BuildingType.values().length];
+        double totalArea = 0;
+        long totalCapacity = 0;
+        double totalCost = 0;
+        int staleColumns = 0;
+
+        for (AbstractBuilding building : buildings) {
+            count++;
+            perStatus[building.getStatus().ordinal()]++;
+            perType[building.getBuildingType().ordinal()]++;
+            totalArea += building.calculateTotalArea();
+            totalCapacity += building.getCapacity();
+            totalCost += building.calculateMaintenanceCost();
+            // The columns must hold what the building is indexed under
+            int slot = building.getSlot();
+            if (columns.getStatus(slot) != building.getStatus()
+                    || columns.getFloors(slot) != building.getFloors()
+                    || columns.getTotalArea(slot) != building.calculateTotalArea()
+                    || columns.getCapacity(slot) != building.getCapacity()
+                    || columns.getMaintenanceCost(slot) != building.calculateMaintenanceCost()) {
+                staleColumns++;
+            }
+        }
+
+        CityStatistics running = snapshotStatistics();
+        check(problems, "Building count", running.getBuildingCount(), count);
+        for (BuildingStatus status : BuildingStatus.values()) {
+            check(problems, "Status " + status.getDisplayName(),
+                    running.getCount(status), perStatus[status.ordinal()]);
+        }
+        for (BuildingType type : BuildingType.values()) {
+            check(problems, "Type " + type.getName(), running.getCount(type), perType[type.ordinal()]);
+        }
+        check(problems, "Total area", running.getTotalArea(), totalArea);
+        check(problems, "Total capacity", running.getTotalCapacity(), totalCapacity);
+        check(problems, "Total maintenance cost", running.getTotalMaintenanceCost(), totalCost);
+
+        check(problems, "Buildings with stale columns", staleColumns, 0);
+
+        // The column scans must agree with the running totals as well
+        int[] columnTypes = columns.countByType();
+        double columnArea = 0;
+        long columnCapacity = 0;
+        double columnCost = 0;
+        for (BuildingType type : BuildingType.values()) {
+            check(problems, "Column scan type " + type.getName(),
+                    running.getCount(type), columnTypes[type.ordinal()]);
+        }
+        for (double area : columns.sumTotalAreaByType()) {
+            columnArea += area;
+        }
+        for (long capacity : columns.sumCapacityByType()) {
+            columnCapacity += capacity;
+        }
+        for (double cost : columns.sumMaintenanceCostByType()) {
+            columnCost += cost;
+        }
+        check(problems, "Column scan area", running.getTotalArea(), columnArea);
+        check(problems, "Column scan capacity", running.getTotalCapacity(), columnCapacity);
+        check(problems, "Column scan maintenance cost", running.getTotalMaintenanceCost(), columnCost);
+
+        return problems;
+    }
+
+    private static void check(ArrayList<String> problems, String what, double actual, double expected) {
+        // Running double sums may drift slightly, so allow a tiny relative error
+        double tolerance = 1e-6 * Math.max(1.0, Math.abs(expected));
+        if (Math.abs(actual - expected) > tolerance) {
+            problems.add(what + ": running=" + actual + ", rescan=" + expected);
+        }
+    }
+
     /**
      * Validate building occupancy with exception handling
      * Demonstrates: Throwing custom exception
@@ -369,12 +1183,110 @@ public class BuildingManager {
         System.out.println("Utilization: " + String.format("%.1f", utilizationRate) + "%");
     }
 
+    /**
+     * BULK TRANSITION: move every building with status 'from' to 'to'.
+     * Each building is switched with its own compare-and-set, so buildings
+     * changed concurrently by someone else are simply skipped.
+     * Returns the number of buildings that were transitioned.
+     */
+    public int transitionAll(BuildingStatus from, BuildingStatus to) throws InvalidBuildingStatusException {
+        return transitionAll(from, to, building -> true);
+    }
+
+    /**
+     * BULK TRANSITION of the buildings with status 'from' that match a filter
+     */
+    public int transitionAll(BuildingStatus from, BuildingStatus to, Predicate<AbstractBuilding> filter)
+            throws InvalidBuildingStatusException {
+        if (!from.canTransitionTo(to)) {
+            throw new InvalidBuildingStatusException(
+                    "Cannot change status to " + to.getDisplayName(),
+                    from,
+                    "Bulk Status Change"
+            );
+        }
+
+        // Copy the bucket: every successful transition moves a building out of it
+        ArrayList<AbstractBuilding> candidates = new ArrayList<>(viewBuildingsByStatus(from));
+        int transitioned = 0;
+        for (AbstractBuilding building : candidates) {
+            if (filter.test(building) && building.transitionStatus(from, to)) {
+                transitioned++;
+            }
+        }
+        return transitioned;
+    }
+
+    /**
+     * ENTER event (e.g. from a turnstile): admit people atomically.
+     * Lock-free, so it may be called from many threads at once.
+     */
+    public void admit(AbstractBuilding building, int people)
+            throws BuildingCapacityException, InvalidBuildingStatusException, BuildingNotFoundException {
+        if (people <= 0) {
+            throw new IllegalArgumentException("Number of people must be positive");
+        }
+
+        if (!building.isUsable()) {
+            throw new InvalidBuildingStatusException(
+                    "Cannot admit visitors - Building is not operational",
+                    building.getStatus(),
+                    "Admission"
+            );
+        }
+
+        if (building.getChangeListener() != this || !building.tryEnter(people)) {
+            throw new BuildingNotFoundException(
+                    "Building is not managed by this city",
+                    building.getName()
+            );
+        }
+        // Added after the CAS: if the building is removed meanwhile, its
+        // close already counted these people, so the total still balances
+        totalOccupancy.add(people);
+    }
+
+    /**
+     * EXIT event: returns how many people actually left
+     */
+    public int release(AbstractBuilding building, int people) {
+        if (people <= 0) {
+            throw new IllegalArgumentException("Number of people must be positive");
+        }
+        if (building.getChangeListener() != this) {
+            return 0; // not one of ours
+        }
+        int left = building.exit(people);
+        totalOccupancy.add(-left);
+        return left;
+    }
+
+    /**
+     * People inside all buildings of the city
+     */
+    public long getTotalOccupancy() {
+        return totalOccupancy.sum();
+    }
+
     /**
      * Provide service with exception handling
      */
     public void requestService(AbstractBuilding building, String serviceName)
             throws ServiceUnavailableException, InvalidBuildingStatusException {
 
+        Serviceable serviceable = validateServiceRequest(building, serviceName);
+
+        // Provide the service
+        serviceable.provideService(serviceName);
+    }
+
+    /**
+     * Check that a building can provide a service right now
+     * Shared with ServiceRequestExecutor, which runs requests asynchronously
+     */
+    static Serviceable validateServiceRequest(AbstractBuilding building, String serviceName)
+            throws ServiceUnavailableException, InvalidBuildingStatusException {
+
         // Check if building is operational
         if (!building.isUsable()) {
             throw new InvalidBuildingStatusException(
@@ -404,56 +1316,82 @@ public class BuildingManager {
             );
         }
 
-        // Provide the service
-        serviceable.provideService(serviceName);
+        return serviceable;
     }
 
     /**
-     * Get all buildings (returns copy of ArrayList)
+     * Get all buildings (returns a new ArrayList)
+     * For read-only use prefer snapshot(), which does not copy the list
      */
     public ArrayList<AbstractBuilding> getAllBuildings() {
-        return new ArrayList<>(buildings); // Return copy to prevent external modification
+        ArrayList<AbstractBuilding> copy = new ArrayList<>(buildings.size());
+        for (AbstractBuilding building : buildings) {
+            copy.add(building); // Copy to prevent external modification
+        }
+        return copy;
+    }
+
+    /**
+     * Point-in-time, read-only view of all buildings (MVCC)
+     * Shares storage with the manager, so no per-building copy is made
+     */
+    public BuildingSnapshot snapshot() {
+        return new BuildingSnapshot(buildings.snapshot());
     }
 
     /**
      * Clear all buildings
      */
     public void clearAllBuildings() {
-        int count = buildings.size();
-        buildings.clear(); // ArrayList CLEAR method (bonus)
+        int count = dropAllBuildings();
+        MutationLog log = mutationLog;
+        if (log != null) {
+            log.logClear();
+        }
+        commitLog();
         System.out.println("✓ All buildings cleared. Removed " + count + " buildings.");
     }
 
     /**
-     * Get statistics using ArrayList methods
+     * Detach every building and empty every index
+     *
+     * @return number of buildings removed
      */
-    public void displayStatistics() {
-        if (buildings.isEmpty()) {
-            System.out.println("\nNo buildings to display statistics!");
-            return;
-        }
-
-        System.out.println("\n=== City Statistics ===");
-        System.out.println("Total Buildings: " + buildings.size()); // SIZE
-
-        int operational = 0;
-        double totalArea = 0;
-        int totalCapacity = 0;
-
-        // ENHANCED FOR LOOP for calculations
+    private int dropAllBuildings() {
+        int count = buildings.size();
         for (AbstractBuilding building : buildings) {
-            if (building.isUsable()) {
-                operational++;
+            building.setSlot(-1);
+            building.closeForAdmission();
+            if (building.getChangeListener() == this) {
+                building.setChangeListener(null);
             }
-            totalArea += building.calculateTotalArea();
-            totalCapacity += building.getCapacity();
         }
+        totalOccupancy.reset();
+
+        // Drop every index at once instead of removing building by building
+        buildings.clear();
+        columns.clearAll();
+        statistics.reset();
+        buildingsById.clear();
+        for (LinkedHashSet<AbstractBuilding> bucket : buildingsByType.values()) {
+            bucket.clear();
+        }
+        for (LinkedHashSet<AbstractBuilding> bucket : buildingsByStatus.values()) {
+            bucket.clear();
+        }
+        nameIndex.clear();
+        capacityIndex.clear();
+        areaIndex.clear();
+        floorsIndex.clear();
+        spatialIndex.clear();
+        capabilityIndex.clearAll();
+        return count;
+    }
 
-        System.out.println("Operational: " + operational);
-        System.out.println("Under Maintenance/Closed: " + (buildings.size() - operational));
-        System.out.println("Total Area: " + String.format("%.2f", totalArea) + " sq meters");
-        System.out.println("Total Capacity: " + totalCapacity + " people");
-        System.out.println("Average Building Size: " +
-                String.format("%.2f", totalArea / buildings.size()) + " sq meters");
+    /**
+     * Display statistics - O(1) read of the running aggregates
+     */
+    public void displayStatistics() {
+        getStatistics().display();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,340 @@
+package smartcity;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * MODULE 5: BuildingNameIndex - Trie over case-folded building names
+ *
+ * Supports three kinds of lookup without scanning every building:
+ * - EXACT match (walk the trie once)
+ * - PREFIX match, ranked shortest name first, then alphabetically
+ * - FUZZY match within a bounded edit distance (Levenshtein),
+ *   ranked by distance; branches that cannot match are pruned early
+ *
+ * Children of each node are kept in small sorted arrays instead of maps
+ * to keep memory usage low with millions of names.
+ */
+class BuildingNameIndex {
+
+    // Upper bound for fuzzy search, larger values would visit most of the trie
+    static final int MAX_EDIT_DISTANCE = 3;
+
+    private static final char[] NO_KEYS = new char[0];
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    /**
+     * One trie node per character of a name
+     */
+    private static final class Node {
+        char[] keys = NO_KEYS;                 // sorted child characters
+        Node[] children = NO_CHILDREN;         // child for keys[i]
+        int childCount;
+        ArrayList<AbstractBuilding> buildings; // buildings whose name ends here
+        int subtreeCount;                      // buildings in this node and below
+
+        Node child(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            return i >= 0 ? children[i] : null;
+        }
+
+        Node getOrCreateChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            if (i >= 0) {
+                return children[i];
+            }
+            int insertAt = -(i + 1);
+            if (childCount == keys.length) {
+                int newLength = Math.max(2, keys.length * 2);
+                keys = Arrays.copyOf(keys, newLength);
+                children = Arrays.copyOf(children, newLength);
+            }
+            System.arraycopy(keys, insertAt, keys, insertAt + 1, childCount - insertAt);
+            System.arraycopy(children, insertAt, children, insertAt + 1, childCount - insertAt);
+            Node node = new Node();
+            keys[insertAt] = c;
+            children[insertAt] = node;
+            childCount++;
+            return node;
+        }
+
+        void removeChild(char c) {
+            int i = Arrays.binarySearch(keys, 0, childCount, c);
+            if (i >= 0) {
+                System.arraycopy(keys, i + 1, keys, i, childCount - i - 1);
+                System.arraycopy(children, i + 1, children, i, childCount - i - 1);
+                childCount--;
+                children[childCount] = null;
+            }
+        }
+    }
+
+    /**
+     * Fuzzy match candidate (used for ranking)
+     */
+    private static final class Match {
+        final AbstractBuilding building;
+        final int distance;
+
+        Match(AbstractBuilding building, int distance) {
+            this.building = building;
+            this.distance = distance;
+        }
+    }
+
+    // Best match first: smaller distance, then shorter name, then alphabetical
+    private static final Comparator<Match> MATCH_ORDER = Comparator
+            .comparingInt((Match m) -> m.distance)
+            .thenComparingInt(m -> m.building.getName().length())
+            .thenComparing(m -> m.building.getName(), String.CASE_INSENSITIVE_ORDER);
+
+    // Order of findByPrefix() results: shorter names first, then alphabetical
+    // (used to merge the results of several indexes)
+    static final Comparator<AbstractBuilding> PREFIX_ORDER = Comparator
+            .comparingInt((AbstractBuilding b) -> fold(b.getName()).length())
+            .thenComparing(b -> fold(b.getName()));
+
+    private final Node root = new Node();
+
+    /**
+     * Case folding applied to both indexed names and queries
+     */
+    static String fold(String name) {
+        return name.trim().toLowerCase(Locale.ROOT);
+    }
+
+    public void add(AbstractBuilding building) {
+        String key = fold(building.getName());
+        Node node = root;
+        node.subtreeCount++;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.getOrCreateChild(key.charAt(i));
+            node.subtreeCount++;
+        }
+        if (node.buildings == null) {
+            node.buildings = new ArrayList<>(1);
+        }
+        node.buildings.add(building);
+    }
+
+    /**
+     * Remove building that was indexed under the given name
+     * (the name is passed in because the building may already be renamed)
+     */
+    public void remove(AbstractBuilding building, String indexedName) {
+        String key = fold(indexedName);
+        Node[] path = new Node[key.length() + 1];
+        Node node = root;
+        path[0] = node;
+        for (int i = 0; i < key.length(); i++) {
+            node = node.child(key.charAt(i));
+            if (node == null) {
+                return;
+            }
+            path[i + 1] = node;
+        }
+        if (node.buildings == null || !node.buildings.remove(building)) {
+            return;
+        }
+        if (node.buildings.isEmpty()) {
+            node.buildings = null;
+        }
+
+        // Update counts bottom-up and prune nodes that became empty
+        for (int i = key.length(); i >= 0; i--) {
+            path[i].subtreeCount--;
+            if (i > 0 && path[i].subtreeCount == 0) {
+                path[i - 1].removeChild(key.charAt(i - 1));
+            }
+        }
+    }
+
+    public void clear() {
+        root.keys = NO_KEYS;
+        root.children = NO_CHILDREN;
+        root.childCount = 0;
+        root.buildings = null;
+        root.subtreeCount = 0;
+    }
+
+    /**
+     * Walk the trie to the node for a folded key (null if absent)
+     */
+    private Node find(String key) {
+        Node node = root;
+        for (int i = 0; i < key.length() && node != null; i++) {
+            node = node.child(key.charAt(i));
+        }
+        return node;
+    }
+
+    /**
+     * EXACT lookup (case-insensitive) - O(name length)
+     */
+    public ArrayList<AbstractBuilding> findExact(String name) {
+        Node node = find(fold(name));
+        if (node == null || node.buildings == null) {
+            return new ArrayList<>();
+        }
+        return new ArrayList<>(node.buildings);
+    }
+
+    /**
+     * Number of buildings whose name starts with the prefix - O(prefix length)
+     */
+    public int countByPrefix(String prefix) {
+        Node node = find(fold(prefix));
+        return node == null ? 0 : node.subtreeCount;
+    }
+
+    /**
+     * Lazy view of every building whose name starts with the prefix,
+     * in alphabetical (depth-first) order. Nothing is copied up front.
+     * The view must not be used while the index is being modified.
+     */
+    public Iterable<AbstractBuilding> iterateByPrefix(String prefix) {
+        Node start = find(fold(prefix));
+        if (start == null) {
+            return Collections.emptyList();
+        }
+        return () -> new PrefixIterator(start);
+    }
+
+    /**
+     * Depth-first walk below a node using an explicit stack
+     */
+    private static final class PrefixIterator implements Iterator<AbstractBuilding> {
+        private final ArrayDeque<Node> stack = new ArrayDeque<>();
+        private Iterator<AbstractBuilding> current = Collections.emptyIterator();
+
+        PrefixIterator(Node start) {
+            stack.push(start);
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && !stack.isEmpty()) {
+                Node node = stack.pop();
+                // Push children in reverse so the smallest character is visited first
+                for (int i = node.childCount - 1; i >= 0; i--) {
+                    stack.push(node.children[i]);
+                }
+                if (node.buildings != null) {
+                    current = node.buildings.iterator();
+                }
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public AbstractBuilding next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+
+    /**
+     * PREFIX lookup - breadth-first walk below the prefix node, so shorter
+     * names come first and siblings come in alphabetical order.
+     * Stops as soon as 'limit' buildings have been collected.
+     */
+    public ArrayList<AbstractBuilding> findByPrefix(String prefix, int limit) {
+        ArrayList<AbstractBuilding> result = new ArrayList<>();
+        Node start = find(fold(prefix));
+        if (start == null || limit <= 0) {
+            return result;
+        }
+
+        ArrayDeque<Node> queue = new ArrayDeque<>();
+        queue.add(start);
+        while (!queue.isEmpty()) {
+            Node node = queue.poll();
+            if (node.buildings != null) {
+                for (AbstractBuilding building : node.buildings) {
+                    result.add(building);
+                    if (result.size() >= limit) {
+                        return result;
+                    }
+                }
+            }
+            for (int i = 0; i < node.childCount; i++) {
+                queue.add(node.children[i]);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * FUZZY lookup - all names within 'maxEdits' insertions, deletions or
+     * substitutions of the query, best matches first, at most 'limit' results.
+     * One Levenshtein row is computed per trie node; a branch is skipped as
+     * soon as every value in its row exceeds maxEdits.
+     */
+    public ArrayList<AbstractBuilding> findSimilar(String name, int maxEdits, int limit) {
+        ArrayList<AbstractBuilding> result = new ArrayList<>();
+        if (limit <= 0) {
+            return result;
+        }
+        String query = fold(name);
+        int edits = Math.max(0, Math.min(maxEdits, MAX_EDIT_DISTANCE));
+
+        int[] firstRow = new int[query.length() + 1];
+        for (int i = 0; i <= query.length(); i++) {
+            firstRow[i] = i;
+        }
+
+        // Max-heap on rank keeps only the best 'limit' matches
+        PriorityQueue<Match> best = new PriorityQueue<>(MATCH_ORDER.reversed());
+        for (int i = 0; i < root.childCount; i++) {
+            collectSimilar(root.children[i], root.keys[i], query, firstRow, edits, limit, best);
+        }
+
+        Match[] ranked = best.toArray(new Match[0]);
+        Arrays.sort(ranked, MATCH_ORDER);
+        for (Match match : ranked) {
+            result.add(match.building);
+        }
+        return result;
+    }
+
+    private void collectSimilar(Node node, char c, String query, int[] previousRow,
+                               int maxEdits, int limit, PriorityQueue<Match> best) {
+        int columns = query.length() + 1;
+        int[] row = new int[columns];
+        row[0] = previousRow[0] + 1;
+        int rowMin = row[0];
+
+        for (int i = 1; i < columns; i++) {
+            int insert = row[i - 1] + 1;
+            int delete = previousRow[i] + 1;
+            int replace = previousRow[i - 1] + (query.charAt(i - 1) == c ? 0 : 1);
+            row[i] = Math.min(insert, Math.min(delete, replace));
+            rowMin = Math.min(rowMin, row[i]);
+        }
+
+        int distance = row[columns - 1];
+        if (distance <= maxEdits && node.buildings != null) {
+            for (AbstractBuilding building : node.buildings) {
+                best.add(new Match(building, distance));
+                if (best.size() > limit) {
+                    best.poll(); // drop the worst match
+                }
+            }
+        }
+
+        if (rowMin <= maxEdits) {
+            for (int i = 0; i < node.childCount; i++) {
+                collectSimilar(node.children[i], node.keys[i], query, row, maxEdits, limit, best);
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * MODULE 5: BuildingQuery - Composable query with an index-aware planner
+ *
+ * This demonstrates:
+ * - BUILDER pattern (each method returns 'this' for chaining)
+ * - Choosing the most selective INDEX as the source of candidates
+ * - STREAMING results (no intermediate ArrayList copies)
+ *
+ * Example:
+ *   manager.query()
+ *          .ofType(BuildingType.HOSPITAL)
+ *          .withStatus(BuildingStatus.OPERATIONAL)
+ *          .capacityBetween(500, 2000)
+ *          .withCapability(BuildingCapability.FULLY_ACCESSIBLE)
+ *          .sortedBy(Comparator.comparing(AbstractBuilding::getName))
+ *          .limit(10)
+ *          .list();
+ */
+public class BuildingQuery {
+
+    /**
+     * Index used to produce the candidate buildings
+     */
+    public enum Source {
+        FULL_SCAN("Full scan"),
+        TYPE_INDEX("Type index"),
+        STATUS_INDEX("Status index"),
+        CAPACITY_INDEX("Capacity range index"),
+        NAME_INDEX("Name prefix index"),
+        CAPABILITY_INDEX("Capability bitmap index");
+
+        private final String displayName;
+
+        Source(String displayName) {
+            this.displayName = displayName;
+        }
+
+        public String getDisplayName() {
+            return displayName;
+        }
+    }
+
+    private final BuildingManager manager;
+
+    // Criteria (null / empty = not used)
+    private BuildingType type;
+    private BuildingStatus status;
+    private Integer minCapacity;
+    private Integer maxCapacity;
+    private String namePrefix;
+    private final EnumSet<BuildingCapability> capabilities = EnumSet.noneOf(BuildingCapability.class);
+    private Comparator<AbstractBuilding> order;
+    private long limit = Long.MAX_VALUE;
+
+    // Plan chosen by the last call to plan()
+    private Source source;
+    private int estimatedCandidates;
+
+    // Package-private: created through BuildingManager.query()
+    BuildingQuery(BuildingManager manager) {
+        this.manager = manager;
+    }
+
+    // BUILDER methods
+
+    public BuildingQuery ofType(BuildingType type) {
+        this.type = type;
+        return this;
+    }
+
+    public BuildingQuery withStatus(BuildingStatus status) {
+        this.status = status;
+        return this;
+    }
+
+    public BuildingQuery capacityBetween(int minCapacity, int maxCapacity) {
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+        return this;
+    }
+
+    public BuildingQuery nameStartsWith(String prefix) {
+        this.namePrefix = BuildingNameIndex.fold(prefix);
+        return this;
+    }
+
+    public BuildingQuery withCapability(BuildingCapability capability) {
+        this.capabilities.add(capability);
+        return this;
+    }
+
+    public BuildingQuery sortedBy(Comparator<AbstractBuilding> order) {
+        this.order = order;
+        return this;
+    }
+
+    public BuildingQuery limit(long limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit cannot be negative");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    /**
+     * PLANNER: estimate how many candidates each usable index would produce
+     * and pick the smallest. All estimates are cheap (bucket sizes, trie
+     * subtree counts, popcounts, or a range count that stops early).
+     */
+    private void plan() {
+        source = Source.FULL_SCAN;
+        estimatedCandidates = manager.getBuildingCount();
+
+        if (type != null) {
+            consider(Source.TYPE_INDEX, manager.countBuildingsByType(type));
+        }
+        if (status != null) {
+            consider(Source.STATUS_INDEX, manager.countBuildingsByStatus(status));
+        }
+        if (namePrefix != null) {
+            consider(Source.NAME_INDEX, manager.countBuildingsByNamePrefix(namePrefix));
+        }
+        if (!capabilities.isEmpty()) {
+            consider(Source.CAPABILITY_INDEX,
+                    manager.countBuildingsWith(capabilities.toArray(new BuildingCapability[0])));
+        }
+        if (minCapacity != null) {
+            // Stop counting once the range is no better than the current choice
+            consider(Source.CAPACITY_INDEX,
+                    manager.countBuildingsByCapacityRange(minCapacity, maxCapacity, estimatedCandidates));
+        }
+    }
+
+    private void consider(Source candidate, int estimate) {
+        if (estimate < estimatedCandidates) {
+            source = candidate;
+            estimatedCandidates = estimate;
+        }
+    }
+
+    /**
+     * Candidate buildings produced by the chosen index
+     */
+    private Iterable<AbstractBuilding> candidates() {
+        switch (source) {
+            case TYPE_INDEX:
+                return manager.viewBuildingsByType(type);
+            case STATUS_INDEX:
+                return manager.viewBuildingsByStatus(status);
+            case CAPACITY_INDEX:
+                return manager.findBuildingsByCapacityRange(minCapacity, maxCapacity);
+            case NAME_INDEX:
+                return manager.iterateBuildingsByNamePrefix(namePrefix);
+            case CAPABILITY_INDEX:
+                return manager.iterateBuildingsWith(capabilities.toArray(new BuildingCapability[0]));
+            case FULL_SCAN:
+            default:
+                return manager.iterateAllBuildings();
+        }
+    }
+
+    /**
+     * Every criterion as one predicate (re-checking the source criterion is cheap)
+     */
+    private Predicate<AbstractBuilding> filter() {
+        Predicate<AbstractBuilding> filter = building -> true;
+
+        if (type != null) {
+            filter = filter.and(building -> building.getBuildingType() == type);
+        }
+        if (status != null) {
+            filter = filter.and(building -> building.getStatus() == status);
+        }
+        if (minCapacity != null) {
+            filter = filter.and(building -> building.getCapacity() >= minCapacity
+                    && building.getCapacity() <= maxCapacity);
+        }
+        if (namePrefix != null) {
+            filter = filter.and(building -> BuildingNameIndex.fold(building.getName()).startsWith(namePrefix));
+        }
+        for (BuildingCapability capability : capabilities) {
+            filter = filter.and(capability::appliesTo);
+        }
+        return filter;
+    }
+
+    /**
+     * Run the query lazily. Buildings must not be added or removed
+     * while the stream is being consumed.
+     */
+    public Stream<AbstractBuilding> stream() {
+        plan();
+        Stream<AbstractBuilding> stream = StreamSupport.stream(candidates().spliterator(), false)
+                .filter(filter());
+        if (order != null) {
+            stream = stream.sorted(order);
+        }
+        return stream.limit(limit);
+    }
+
+    /**
+     * Run the query and collect the results
+     */
+    public List<AbstractBuilding> list() {
+        return stream().collect(Collectors.toCollection(ArrayList::new));
+    }
+
+    /**
+     * Run the query and count the results
+     */
+    public long count() {
+        return stream().count();
+    }
+
+    /**
+     * Describe the plan that would be used, for diagnostics
+     */
+    public String explain() {
+        plan();
+        StringBuilder sb = new StringBuilder();
+        sb.append("Source: ").append(source.getDisplayName())
+                .append(" (~").append(estimatedCandidates).append(" candidates of ")
+                .append(manager.getBuildingCount()).append(")");
+
+        ArrayList<String> filters = new ArrayList<>();
+        if (type != null) {
+            filters.add("type = " + type.getName());
+        }
+        if (status != null) {
+            filters.add("status = " + status.getDisplayName());
+        }
+        if (minCapacity != null) {
+            filters.add("capacity " + minCapacity + ".." + maxCapacity);
+        }
+        if (namePrefix != null) {
+            filters.add("name starts with '" + namePrefix + "'");
+        }
+        for (BuildingCapability capability : capabilities) {
+            filters.add(capability.getDisplayName().toLowerCase(Locale.ROOT));
+        }
+        sb.append("\nFilters: ").append(filters.isEmpty() ? "none" : String.join(", ", filters));
+        sb.append("\nSorted: ").append(order != null ? "yes" : "no");
+        sb.append("\nLimit: ").append(limit == Long.MAX_VALUE ? "none" : String.valueOf(limit));
+        return sb.toString();
+    }
+}
@@ -0,0 +1,123 @@
+package smartcity;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * MODULE 5: BuildingRangeIndex - Sorted index over one numeric attribute
+ *
+ * Buildings are grouped by value in a TREEMAP, so a range query only
+ * touches the keys inside the range. Results are returned LAZILY: the
+ * Iterable walks the live index and never copies the matching buildings.
+ */
+class BuildingRangeIndex {
+
+    private final TreeMap<Double, LinkedHashSet<AbstractBuilding>> buckets = new TreeMap<>();
+    private int size;
+
+    public void add(AbstractBuilding building, double value) {
+        buckets.computeIfAbsent(value, v -> new LinkedHashSet<>()).add(building);
+        size++;
+    }
+
+    /**
+     * Remove building that was indexed under the given value
+     */
+    public void remove(AbstractBuilding building, double value) {
+        LinkedHashSet<AbstractBuilding> bucket = buckets.get(value);
+        if (bucket != null && bucket.remove(building)) {
+            size--;
+            if (bucket.isEmpty()) {
+                buckets.remove(value);
+            }
+        }
+    }
+
+    public void clear() {
+        buckets.clear();
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Smallest indexed value (NaN when empty)
+     */
+    public double min() {
+        return buckets.isEmpty() ? Double.NaN : buckets.firstKey();
+    }
+
+    /**
+     * Largest indexed value (NaN when empty)
+     */
+    public double max() {
+        return buckets.isEmpty() ? Double.NaN : buckets.lastKey();
+    }
+
+    /**
+     * Lazy view of all buildings with min <= value <= max, in ascending value order.
+     * The view must not be used while the index is being modified.
+     */
+    public Iterable<AbstractBuilding> range(double min, double max) {
+        if (min > max) {
+            return Collections.emptyList();
+        }
+        NavigableMap<Double, LinkedHashSet<AbstractBuilding>> slice =
+                buckets.subMap(min, true, max, true);
+        return () -> new RangeIterator(slice.values().iterator());
+    }
+
+    /**
+     * Count buildings in a range, stopping once 'limit' is reached.
+     * Useful to estimate selectivity without walking large ranges.
+     */
+    public int count(double min, double max, int limit) {
+        if (min > max) {
+            return 0;
+        }
+        int count = 0;
+        for (Map.Entry<Double, LinkedHashSet<AbstractBuilding>> entry
+                : buckets.subMap(min, true, max, true).entrySet()) {
+            count += entry.getValue().size();
+            if (count >= limit) {
+                return limit;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Flattens the buckets of a range into a single stream of buildings
+     */
+    private static final class RangeIterator implements Iterator<AbstractBuilding> {
+        private final Iterator<LinkedHashSet<AbstractBuilding>> bucketIterator;
+        private Iterator<AbstractBuilding> current = Collections.emptyIterator();
+
+        RangeIterator(Iterator<LinkedHashSet<AbstractBuilding>> bucketIterator) {
+            this.bucketIterator = bucketIterator;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (!current.hasNext() && bucketIterator.hasNext()) {
+                current = bucketIterator.next().iterator();
+            }
+            return current.hasNext();
+        }
+
+        @Override
+        public AbstractBuilding next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * MODULE 5: BuildingSnapshot - Immutable point-in-time view of the city
+ *
+ * This demonstrates:
+ * - MVCC (multi-version concurrency control): each snapshot is a version
+ *   of the building list that never changes, even while the manager keeps
+ *   adding and removing buildings
+ * - Cheap creation: the snapshot shares storage chunks with the manager
+ *   instead of copying every building reference
+ *
+ * Only the set of buildings is frozen - the building objects themselves
+ * are shared, so a status change made later is visible through the
+ * snapshot as well.
+ */
+public class BuildingSnapshot implements Iterable<AbstractBuilding> {
+
+    private final BuildingStore store;
+
+    // Package-private: created through BuildingManager.snapshot()
+    BuildingSnapshot(BuildingStore store) {
+        this.store = store;
+    }
+
+    public int size() {
+        return store.size();
+    }
+
+    public boolean isEmpty() {
+        return store.isEmpty();
+    }
+
+    /**
+     * Building at a position, in the same order as BuildingManager.getBuilding()
+     */
+    public AbstractBuilding get(int index) throws BuildingNotFoundException {
+        if (index < 0 || index >= store.size()) {
+            throw new BuildingNotFoundException(
+                    "Building not found at index " + index + " in snapshot"
+            );
+        }
+        return store.get(store.slotAt(index));
+    }
+
+    @Override
+    public Iterator<AbstractBuilding> iterator() {
+        return store.iterator();
+    }
+
+    public Stream<AbstractBuilding> stream() {
+        return StreamSupport.stream(spliterator(), false);
+    }
+
+    /**
+     * Mutable copy of the snapshot (O(n), only when a list is really needed)
+     */
+    public ArrayList<AbstractBuilding> toList() {
+        ArrayList<AbstractBuilding> list = new ArrayList<>(store.size());
+        for (AbstractBuilding building : store) {
+            list.add(building);
+        }
+        return list;
+    }
+}
@@ -8,6 +8,7 @@ package smartcity;
  * - Enum with attributes
  * - Enum methods
  * - Using enum in switch-case
+ * - TRANSITION MATRIX: which status changes are allowed
  */
 public enum BuildingStatus {
     // ENUM constants with attributes
@@ -22,6 +23,28 @@ public enum BuildingStatus {
     private final String description;
     private final double operationalLevel; // 0.0 to 1.0
 
+    // TRANSITION MATRIX [from.ordinal()][to.ordinal()] - built once, read lock-free
+    private static final boolean[][] TRANSITIONS;
+
+    static {
+        int n = values().length;
+        TRANSITIONS = new boolean[n][n];
+        for (BuildingStatus status : values()) {
+            TRANSITIONS[status.ordinal()][status.ordinal()] = true; // staying is always allowed
+        }
+        allow(OPERATIONAL, UNDER_MAINTENANCE, CLOSED, EMERGENCY);
+        allow(UNDER_MAINTENANCE, OPERATIONAL, CLOSED, EMERGENCY);
+        allow(UNDER_CONSTRUCTION, OPERATIONAL, CLOSED);
+        allow(CLOSED, OPERATIONAL, UNDER_MAINTENANCE, UNDER_CONSTRUCTION);
+        allow(EMERGENCY, OPERATIONAL, UNDER_MAINTENANCE, CLOSED);
+    }
+
+    private static void allow(BuildingStatus from, BuildingStatus... targets) {
+        for (BuildingStatus to : targets) {
+            TRANSITIONS[from.ordinal()][to.ordinal()] = true;
+        }
+    }
+
     // Enum constructor (always private)
     BuildingStatus(String displayName, String description, double operationalLevel) {
         this.displayName = displayName;
@@ -47,6 +70,13 @@ public enum BuildingStatus {
         return operationalLevel > 0.0;
     }
 
+    /**
+     * Check the transition matrix - O(1) array lookup
+     */
+    public boolean canTransitionTo(BuildingStatus next) {
+        return TRANSITIONS[ordinal()][next.ordinal()];
+    }
+
     // Enum method to get color code for UI display
     public String getColorCode() {
         switch (this) {  // ENUM in SWITCH-CASE
@@ -0,0 +1,232 @@
+package smartcity;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * MODULE 5: BuildingStore - Slot-based storage for buildings
+ *
+ * Buildings live in fixed-size CHUNKS (arrays of CHUNK_SIZE slots):
+ * - Growing adds one chunk; existing buildings are never copied
+ * - Removing a building only empties its slot (O(1), nothing shifts)
+ * - Freed slots are kept on a stack and reused by the next add
+ * - Positions (1st, 2nd, ... live building) are found with per-chunk
+ *   live counts, so only one chunk has to be scanned
+ *
+ * COPY-ON-WRITE snapshots: snapshot() copies only the chunk directory and
+ * shares the chunks themselves. Every chunk remembers the epoch in which
+ * it was created or copied; a write to a chunk from an older epoch (one a
+ * snapshot may still see) copies that chunk first. Old chunks are
+ * reclaimed by the garbage collector once no snapshot refers to them.
+ */
+class BuildingStore implements Iterable<AbstractBuilding> {
+
+    static final int CHUNK_BITS = 12;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS; // 4096 slots per chunk
+    private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    private AbstractBuilding[][] chunks = new AbstractBuilding[4][];
+    private int[] chunkLiveCount = new int[4];
+    private int chunkCount;
+    private int[] chunkEpoch = new int[4];
+    private int epoch;
+
+    // Latest snapshot, reused until the next write
+    private BuildingStore frozen;
+
+    private int highWater; // slots [0, highWater) have been handed out at least once
+    private int size;      // live buildings
+
+    // STACK of freed slots (primitive array, no boxing)
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    BuildingStore() {
+    }
+
+    // Read-only copy sharing the chunks of 'live'
+    private BuildingStore(BuildingStore live) {
+        chunks = Arrays.copyOf(live.chunks, live.chunks.length);
+        chunkLiveCount = Arrays.copyOf(live.chunkLiveCount, live.chunkLiveCount.length);
+        chunkCount = live.chunkCount;
+        highWater = live.highWater;
+        size = live.size;
+    }
+
+    /**
+     * Point-in-time, read-only view of this store.
+     * Costs one copy of the chunk directory, or nothing if no write
+     * happened since the previous snapshot.
+     */
+    public BuildingStore snapshot() {
+        if (frozen == null) {
+            epoch++; // every existing chunk is now shared with the snapshot
+            frozen = new BuildingStore(this);
+        }
+        return frozen;
+    }
+
+    /**
+     * Chunk that may be written - copied first if a snapshot shares it
+     */
+    private AbstractBuilding[] writableChunk(int chunkIndex) {
+        frozen = null;
+        if (chunkEpoch[chunkIndex] != epoch) {
+            chunks[chunkIndex] = chunks[chunkIndex].clone();
+            chunkEpoch[chunkIndex] = epoch;
+        }
+        return chunks[chunkIndex];
+    }
+
+    /**
+     * Store building in a free slot and return the slot number
+     */
+    public int add(AbstractBuilding building) {
+        int slot;
+        if (freeCount > 0) {
+            slot = freeSlots[--freeCount];
+        } else {
+            slot = highWater++;
+            if ((slot >>> CHUNK_BITS) == chunkCount) {
+                addChunk();
+            }
+        }
+        writableChunk(slot >>> CHUNK_BITS)[slot & CHUNK_MASK] = building;
+        chunkLiveCount[slot >>> CHUNK_BITS]++;
+        size++;
+        return slot;
+    }
+
+    private void addChunk() {
+        if (chunkCount == chunks.length) {
+            chunks = Arrays.copyOf(chunks, chunkCount * 2);
+            chunkLiveCount = Arrays.copyOf(chunkLiveCount, chunkCount * 2);
+            chunkEpoch = Arrays.copyOf(chunkEpoch, chunkCount * 2);
+        }
+        chunkEpoch[chunkCount] = epoch;
+        chunks[chunkCount++] = new AbstractBuilding[CHUNK_SIZE];
+    }
+
+    /**
+     * Building in a slot (null for a free slot)
+     */
+    public AbstractBuilding get(int slot) {
+        return chunks[slot >>> CHUNK_BITS][slot & CHUNK_MASK];
+    }
+
+    /**
+     * Replace the building in an occupied slot
+     */
+    public void set(int slot, AbstractBuilding building) {
+        writableChunk(slot >>> CHUNK_BITS)[slot & CHUNK_MASK] = building;
+    }
+
+    /**
+     * Empty a slot and make it available for reuse - O(1)
+     */
+    public AbstractBuilding remove(int slot) {
+        AbstractBuilding removed = get(slot);
+        if (removed == null) {
+            return null;
+        }
+        writableChunk(slot >>> CHUNK_BITS)[slot & CHUNK_MASK] = null;
+        chunkLiveCount[slot >>> CHUNK_BITS]--;
+        size--;
+
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+        return removed;
+    }
+
+    /**
+     * Slot of the building at a position (0 = first live building in slot order)
+     */
+    public int slotAt(int position) {
+        if (position < 0 || position >= size) {
+            throw new IndexOutOfBoundsException("Position: " + position + ", Size: " + size);
+        }
+        int chunkIndex = 0;
+        while (position >= chunkLiveCount[chunkIndex]) {
+            position -= chunkLiveCount[chunkIndex];
+            chunkIndex++;
+        }
+        AbstractBuilding[] chunk = chunks[chunkIndex];
+        for (int i = 0; ; i++) {
+            if (chunk[i] != null && position-- == 0) {
+                return (chunkIndex << CHUNK_BITS) | i;
+            }
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Number of slots handed out so far (upper bound for slot numbers)
+     */
+    public int slotLimit() {
+        return highWater;
+    }
+
+    public void clear() {
+        chunks = new AbstractBuilding[4][];
+        chunkLiveCount = new int[4];
+        chunkEpoch = new int[4];
+        chunkCount = 0;
+        frozen = null;
+        highWater = 0;
+        size = 0;
+        freeSlots = new int[16];
+        freeCount = 0;
+    }
+
+    /**
+     * Visit live buildings in slot order, skipping empty chunks entirely
+     */
+    @Override
+    public Iterator<AbstractBuilding> iterator() {
+        return new Iterator<AbstractBuilding>() {
+            private int slot = -1;
+            private int nextSlot = findNext(0);
+
+            private int findNext(int from) {
+                int s = from;
+                while (s < highWater) {
+                    int chunkIndex = s >>> CHUNK_BITS;
+                    if (chunkLiveCount[chunkIndex] == 0) {
+                        s = (chunkIndex + 1) << CHUNK_BITS;
+                        continue;
+                    }
+                    if (chunks[chunkIndex][s & CHUNK_MASK] != null) {
+                        return s;
+                    }
+                    s++;
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return nextSlot >= 0;
+            }
+
+            @Override
+            public AbstractBuilding next() {
+                if (nextSlot < 0) {
+                    throw new NoSuchElementException();
+                }
+                slot = nextSlot;
+                nextSlot = findNext(slot + 1);
+                return get(slot);
+            }
+        };
+    }
+}
@@ -0,0 +1,94 @@
+package smartcity;
+
+import java.util.BitSet;
+import java.util.EnumMap;
+
+/**
+ * MODULE 5: CapabilityIndex - One dense BITSET per capability
+ *
+ * Bit i of a bitmap is set when the building stored in slot i has that
+ * capability. Reports become bitmap AND / popcount operations instead of
+ * instanceof checks and virtual calls on every building.
+ */
+class CapabilityIndex {
+
+    private final EnumMap<BuildingCapability, BitSet> bitmaps = new EnumMap<>(BuildingCapability.class);
+
+    public CapabilityIndex() {
+        for (BuildingCapability capability : BuildingCapability.values()) {
+            bitmaps.put(capability, new BitSet());
+        }
+    }
+
+    /**
+     * (Re)evaluate every capability of the building stored in 'slot'
+     */
+    public void set(int slot, AbstractBuilding building) {
+        for (BuildingCapability capability : BuildingCapability.values()) {
+            update(slot, building, capability);
+        }
+    }
+
+    /**
+     * Re-evaluate a single capability (e.g. USABLE after a status change)
+     */
+    public void update(int slot, AbstractBuilding building, BuildingCapability capability) {
+        bitmaps.get(capability).set(slot, capability.appliesTo(building));
+    }
+
+    /**
+     * Forget the building stored in 'slot'
+     */
+    public void clear(int slot) {
+        for (BitSet bitmap : bitmaps.values()) {
+            bitmap.clear(slot);
+        }
+    }
+
+    public void clearAll() {
+        for (BitSet bitmap : bitmaps.values()) {
+            bitmap.clear();
+        }
+    }
+
+    /**
+     * Number of buildings having ALL the given capabilities (AND + popcount)
+     */
+    public int count(BuildingCapability... required) {
+        if (required.length == 1) {
+            return bitmaps.get(required[0]).cardinality(); // no copy needed
+        }
+        return matching(required).cardinality();
+    }
+
+    /**
+     * Slots of the buildings having ALL the given capabilities
+     * (a new bitmap, safe to modify)
+     */
+    public BitSet matching(BuildingCapability... required) {
+        if (required.length == 0) {
+            throw new IllegalArgumentException("At least one capability is required");
+        }
+        BitSet result = (BitSet) bitmaps.get(required[0]).clone();
+        for (int i = 1; i < required.length; i++) {
+            result.and(bitmaps.get(required[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Slots of the buildings having 'required' but not 'missing' (AND NOT)
+     */
+    public BitSet matchingWithout(BuildingCapability required, BuildingCapability missing) {
+        BitSet result = (BitSet) bitmaps.get(required).clone();
+        result.andNot(bitmaps.get(missing));
+        return result;
+    }
+
+    /**
+     * Check a single capability of one slot
+     */
+    public boolean has(int slot, BuildingCapability capability) {
+        return bitmaps.get(capability).get(slot);
+    }
+}
@@ -0,0 +1,166 @@
+package smartcity;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MODULE 5: CheckpointManager - Background snapshots and log compaction
+ *
+ * This demonstrates:
+ * - CHECKPOINTING: a fresh CitySnapshotFile is written from an MVCC
+ *   snapshot while other threads keep mutating the city
+ * - LOG COMPACTION: the mutation log segments contained in that snapshot
+ *   are deleted afterwards
+ * - A SCHEDULED background thread that checkpoints once enough records
+ *   have been logged since the previous checkpoint
+ *
+ * Restart cost is then bounded by one snapshot load plus the records
+ * logged since the last checkpoint, however long the city has been running:
+ *
+ *   1. load the snapshot           (CitySnapshotFile.load)
+ *   2. replay the tail of the log  (MutationLog.recover(manager, readLastLsn))
+ *   3. start()
+ *
+ * The manager is read from the checkpoint thread, so it should be a
+ * ConcurrentBuildingManager.
+ */
+public class CheckpointManager implements AutoCloseable {
+
+    public static final long DEFAULT_RECORDS_PER_CHECKPOINT = 100_000;
+
+    private final BuildingManager manager;
+    private final MutationLog log;
+    private final Path snapshotFile;
+    private final long recordsPerCheckpoint;
+
+    private ScheduledExecutorService scheduler;
+    // Log position of the last checkpoint (the recovered position until the first one)
+    private volatile long checkpointLsn;
+
+    // Statistics
+    private final LongAdder checkpoints = new LongAdder();
+    private final LongAdder segmentsDiscarded = new LongAdder();
+    private volatile long lastDurationMillis;
+    private volatile long lastBuildingCount;
+
+    /**
+     * Create after MutationLog.recover(), once the log is attached to the manager
+     */
+    public CheckpointManager(BuildingManager manager, MutationLog log, Path snapshotFile) {
+        this(manager, log, snapshotFile, DEFAULT_RECORDS_PER_CHECKPOINT);
+    }
+
+    /**
+     * @param recordsPerCheckpoint log records after which the background
+     *                             thread takes the next checkpoint
+     */
+    public CheckpointManager(BuildingManager manager, MutationLog log, Path snapshotFile,
+                             long recordsPerCheckpoint) {
+        if (recordsPerCheckpoint <= 0) {
+            throw new IllegalArgumentException("Records per checkpoint must be positive");
+        }
+        this.manager = manager;
+        this.log = log;
+        this.snapshotFile = snapshotFile;
+        this.recordsPerCheckpoint = recordsPerCheckpoint;
+        this.checkpointLsn = log.getLastLsn();
+    }
+
+    /**
+     * Check every 'intervalMillis' whether a checkpoint is due
+     * and take it on the background thread
+     */
+    public synchronized void start(long intervalMillis) {
+        if (scheduler != null) {
+            throw new IllegalStateException("Checkpointing has already been started");
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint");
+            thread.setDaemon(true); // never keeps the application alive
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::checkpointIfDue, intervalMillis, intervalMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Number of log records written since the last checkpoint
+     */
+    public long getRecordsSinceCheckpoint() {
+        return log.getLastLsn() - checkpointLsn;
+    }
+
+    private void checkpointIfDue() {
+        if (getRecordsSinceCheckpoint() < recordsPerCheckpoint) {
+            return;
+        }
+        try {
+            checkpoint();
+        } catch (IOException | RuntimeException e) {
+            // Nothing is lost - the log still holds every record; try again next time
+            // (an exception escaping this task would cancel the schedule)
+            System.err.println("\n❌ Checkpoint failed: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Write a snapshot and discard the log segments it contains.
+     * Runs on the calling thread; mutations may continue meanwhile.
+     *
+     * @return LSN of the last log record contained in the snapshot
+     */
+    public synchronized long checkpoint() throws IOException {
+        long start = System.nanoTime();
+
+        // 1. Start a new segment, so every older segment ends at or below 'lsn'
+        log.rollSegment();
+        // 2. LSN first, snapshot second (see CitySnapshotFile.save)
+        long lsn = log.getLastLsn();
+        // 3. The snapshot is durable before any segment is deleted
+        lastBuildingCount = CitySnapshotFile.save(manager, snapshotFile, lsn);
+        checkpointLsn = lsn;
+        // 4. COMPACTION
+        segmentsDiscarded.add(log.discardSegmentsUpTo(lsn));
+
+        checkpoints.increment();
+        lastDurationMillis = (System.nanoTime() - start) / 1_000_000;
+        return lsn;
+    }
+
+    /**
+     * Stop the background thread (a running checkpoint is allowed to finish)
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService running;
+        synchronized (this) {
+            running = scheduler;
+            scheduler = null;
+        }
+        if (running == null) {
+            return;
+        }
+        running.shutdown();
+        try {
+            running.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public void displayStatistics() {
+        System.out.println("\n=== Checkpoints ===");
+        System.out.println("Snapshot: " + snapshotFile + ", checkpoint at LSN " + checkpointLsn);
+        System.out.println("Checkpoints: " + checkpoints.sum() +
+                ", log segments discarded: " + segmentsDiscarded.sum());
+        if (checkpoints.sum() > 0) {
+            System.out.println("Last checkpoint: " + lastBuildingCount + " buildings in " +
+                    lastDurationMillis + " ms");
+        }
+        System.out.println("Records since checkpoint: " + getRecordsSinceCheckpoint());
+    }
+}
@@ -1,5 +1,11 @@
 package smartcity;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
  * MODULE 4: CityManager Utility Class
  *
@@ -7,8 +13,9 @@ package smartcity;
  */
 public class CityManager {
 
-    // STATIC FINAL constant
-    private static final int MAX_BUILDINGS = 10;
+    // Default array size for the array-based helpers (configurable)
+    public static final int DEFAULT_MAX_BUILDINGS = 10;
+    private static int maxBuildings = DEFAULT_MAX_BUILDINGS;
 
     // Private constructor - utility class
     private CityManager() {}
@@ -97,6 +104,105 @@ public class CityManager {
         }
     }
 
+    // Buildings per fork/join leaf task
+    private static final int PARALLEL_THRESHOLD = 16;
+
+    /**
+     * FORK/JOIN task: split the range in half until it is small enough,
+     * then run each building's operation with its output captured
+     */
+    private static class SpecialOperationTask extends RecursiveAction {
+        // ForkJoinTask is Serializable, but these tasks never leave the pool
+        private static final long serialVersionUID = 1L;
+
+        private final transient AbstractBuilding[] buildings;
+        private final transient SpecialOperationResult[] results;
+        private final int from;
+        private final int to;
+
+        SpecialOperationTask(AbstractBuilding[] buildings, SpecialOperationResult[] results, int from, int to) {
+            this.buildings = buildings;
+            this.results = results;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    results[i] = runCaptured(buildings[i]);
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            invokeAll(new SpecialOperationTask(buildings, results, from, middle),
+                    new SpecialOperationTask(buildings, results, middle, to));
+        }
+    }
+
+    private static SpecialOperationResult runCaptured(AbstractBuilding building) {
+        OutputCapture.begin();
+        boolean successful = true;
+        long start = System.nanoTime();
+        String output;
+        try {
+            System.out.println("\n--- Building: " + building.getName() + " ---");
+            building.performSpecialOperation();
+        } catch (RuntimeException e) {
+            // One failing building must not abort the whole drill
+            successful = false;
+            System.out.println("Operation failed: " + e.getMessage());
+        } finally {
+            // Always detach the buffer - pool threads are reused for other work
+            output = OutputCapture.end();
+        }
+        long elapsed = System.nanoTime() - start;
+        return new SpecialOperationResult(building, output, elapsed, successful);
+    }
+
+    /**
+     * Perform operations on all buildings in PARALLEL (ForkJoinPool).
+     * Each building's output is buffered and printed in the original order,
+     * exactly as performAllSpecialOperations() would print it.
+     */
+    public static List<SpecialOperationResult> performAllSpecialOperationsParallel(
+            AbstractBuilding[] buildings, int count) {
+        if (count == 0) {
+            System.out.println("\nNo buildings available!");
+            return new ArrayList<>();
+        }
+
+        System.out.println("\n=== Performing Special Operations on All Buildings (Parallel) ===");
+
+        SpecialOperationResult[] results = new SpecialOperationResult[count];
+        long start = System.nanoTime();
+        OutputCapture.install();
+        try {
+            ForkJoinPool.commonPool().invoke(new SpecialOperationTask(buildings, results, 0, count));
+        } finally {
+            OutputCapture.uninstall();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        // Emit the buffers in the original order
+        for (SpecialOperationResult result : results) {
+            System.out.print(result.getOutput());
+        }
+        System.out.println("\nCompleted " + count + " operations in " +
+                String.format("%.2f", elapsed / 1_000_000.0) + " ms");
+
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    /**
+     * Parallel special operations over every building in a BuildingManager
+     */
+    public static List<SpecialOperationResult> performAllSpecialOperationsParallel(BuildingManager manager) {
+        ArrayList<AbstractBuilding> buildings = manager.snapshot().toList();
+        return performAllSpecialOperationsParallel(buildings.toArray(new AbstractBuilding[0]), buildings.size());
+    }
+
     /**
      * Display buildings by type using POLYMORPHISM and instanceof
      */
@@ -198,6 +304,61 @@ public class CityManager {
         }
     }
 
+    /**
+     * Display serviceable buildings using the capability BITSET index
+     * Only buildings whose SERVICEABLE bit is set are visited
+     */
+    public static void displayServiceableBuildings(BuildingManager manager) {
+        System.out.println("\n=== Serviceable Buildings ===");
+
+        int found = 0;
+        for (AbstractBuilding building : manager.findBuildingsWith(BuildingCapability.SERVICEABLE)) {
+            System.out.println("\n" + (found + 1) + ". " + building.getName());
+            Serviceable serviceable = (Serviceable) building; // safe: bit guarantees the type
+
+            String[] services = serviceable.getAvailableServices();
+            System.out.println("Available Services:");
+            for (int j = 0; j < services.length && j < 3; j++) {
+                System.out.println("   - " + services[j]);
+            }
+            System.out.println("   ... and more");
+
+            found++;
+        }
+
+        if (found == 0) {
+            System.out.println("No serviceable buildings found.");
+        }
+    }
+
+    /**
+     * Accessibility compliance using the capability BITSET index
+     * Totals are popcounts; no instanceof checks or isFullyAccessible() calls
+     */
+    public static void checkAccessibilityCompliance(BuildingManager manager) {
+        System.out.println("\n=== Accessibility Compliance Report ===");
+
+        for (AbstractBuilding building : manager.findBuildingsWith(
+                BuildingCapability.ACCESSIBLE, BuildingCapability.FULLY_ACCESSIBLE)) {
+            System.out.println("✓ " + building.getName() + " - FULLY ACCESSIBLE");
+        }
+        for (AbstractBuilding building : manager.findBuildingsWithout(
+                BuildingCapability.ACCESSIBLE, BuildingCapability.FULLY_ACCESSIBLE)) {
+            System.out.println("✗ " + building.getName() + " - NEEDS IMPROVEMENT");
+        }
+
+        int total = manager.countBuildingsWith(BuildingCapability.ACCESSIBLE);
+        int compliant = manager.countBuildingsWith(
+                BuildingCapability.ACCESSIBLE, BuildingCapability.FULLY_ACCESSIBLE);
+
+        System.out.println("\nTotal Accessible Buildings: " + total);
+        System.out.println("Fully Compliant: " + compliant);
+        if (total > 0) {
+            double percentage = (compliant * 100.0) / total;
+            System.out.println("Compliance Rate: " + String.format("%.1f", percentage) + "%");
+        }
+    }
+
     /**
      * Display statistics by building priority (using ENUM)
      */
@@ -219,7 +380,27 @@ public class CityManager {
         System.out.println("Regular Buildings: " + (count - criticalCount));
     }
 
+    /**
+     * Priority statistics from the BuildingManager columnar store
+     */
+    public static void displayPriorityStatistics(BuildingManager manager) {
+        System.out.println("\n=== Building Priority Statistics ===");
+
+        int count = manager.getBuildingCount();
+        int criticalCount = manager.countCriticalInfrastructure();
+
+        System.out.println("Total Buildings: " + count);
+        System.out.println("Critical Infrastructure: " + criticalCount);
+        System.out.println("Regular Buildings: " + (count - criticalCount));
+    }
+
     public static int getMaxBuildings() {
-        return MAX_BUILDINGS;
+        return maxBuildings;
+    }
+
+    public static void setMaxBuildings(int maxBuildings) {
+        if (maxBuildings > 0) {
+            CityManager.maxBuildings = maxBuildings;
+        }
     }
 }
\ No newline at end of file
@@ -0,0 +1,311 @@
+package smartcity;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32C;
+
+/**
+ * MODULE 5: CitySnapshotFile - Binary city snapshot on disk
+ *
+ * This demonstrates:
+ * - A versioned BINARY FILE FORMAT with a fixed header
+ * - MEMORY-MAPPED loading: the file is mapped with FileChannel.map() and
+ *   buildings are decoded straight from the mapping (no read() copies)
+ * - CHECKSUMS (CRC32C) on both the header and the body
+ * - ATOMIC SAVE: the file is written under a temporary name, forced to
+ *   disk and then renamed, so a crash never leaves a half-written snapshot
+ * - The LSN of the MUTATION LOG at the time of the snapshot, so recovery
+ *   only has to replay the records logged after it
+ *
+ * Layout (big endian):
+ *   0  int   magic "SCTY"
+ *   4  int   format version
+ *   8  long  number of building records
+ *   16 long  body length in bytes
+ *   24 long  last log LSN contained in the snapshot (0 = none)
+ *   32 int   CRC32C of the body
+ *   36 int   CRC32C of header bytes 0 - 35
+ *   40 ...   building records (see BuildingCodec)
+ *
+ * Version 1 files (32 byte header without the LSN) can still be loaded.
+ *
+ * Live occupancy is not saved: restored buildings start empty.
+ */
+public class CitySnapshotFile {
+
+    static final int MAGIC = 0x53435459; // "SCTY"
+    static final int VERSION = 2;
+    static final int HEADER_SIZE = 40;
+    private static final int V1_HEADER_SIZE = 32;
+
+    // Write buffer is drained to the channel once it holds this much
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+
+    // Buildings handed to the manager per restoreBatch() call (one lock round each)
+    private static final int LOAD_BATCH_SIZE = 4096;
+
+    private CitySnapshotFile() {
+    }
+
+    /**
+     * Validated header fields
+     */
+    private static class Header {
+        int size;
+        long count;
+        long bodyLength;
+        long lastLsn;
+        int bodyCrc;
+    }
+
+    /**
+     * Write every building of the manager to 'file'
+     * Uses an MVCC snapshot, so the manager stays usable while saving
+     *
+     * @return number of buildings written
+     */
+    public static long save(BuildingManager manager, Path file) throws IOException {
+        MutationLog log = manager.getMutationLog();
+        return save(manager, file, log == null ? 0 : log.getLastLsn());
+    }
+
+    /**
+     * Save, recording 'lastLsn' as the last log record the snapshot contains.
+     *
+     * 'lastLsn' must be read BEFORE the snapshot is taken: the manager
+     * applies every mutation before logging it, so all records up to
+     * lastLsn are then visible in the snapshot. Records after it may be
+     * partly visible too, which is harmless because replaying them sets
+     * the same absolute values again.
+     */
+    static long save(BuildingManager manager, Path file, long lastLsn) throws IOException {
+        BuildingSnapshot snapshot = manager.snapshot();
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+
+        CRC32C bodyCrc = new CRC32C();
+        BuildingCodec.BinaryWriter writer = new BuildingCodec.BinaryWriter(2 * FLUSH_THRESHOLD);
+        long count = 0;
+        long bodyLength = 0;
+
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            channel.position(HEADER_SIZE); // header is written last, once the body is known
+
+            for (AbstractBuilding building : snapshot) {
+                synchronized (building) { // setters cannot interleave with the field walk
+                    writer.write(building);
+                }
+                count++;
+                if (writer.buffer().position() >= FLUSH_THRESHOLD) {
+                    bodyLength += drain(writer.buffer(), channel, bodyCrc);
+                }
+            }
+            bodyLength += drain(writer.buffer(), channel, bodyCrc);
+
+            ByteBuffer header = encodeHeader(count, bodyLength, lastLsn, (int) bodyCrc.getValue());
+            long position = 0;
+            while (header.hasRemaining()) {
+                position += channel.write(header, position);
+            }
+            channel.force(true);
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(file.toAbsolutePath().getParent());
+        return count;
+    }
+
+    // Make the rename durable before anything relies on the new file
+    // (not every platform can open a directory - the rename then stays
+    // as durable as the file system makes it)
+    private static void forceDirectory(Path directory) {
+        if (directory == null) {
+            return;
+        }
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // best effort
+        }
+    }
+
+    // Write out the buffered records and add them to the running checksum
+    private static int drain(ByteBuffer buffer, FileChannel channel, CRC32C crc) throws IOException {
+        buffer.flip();
+        int length = buffer.remaining();
+        crc.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+        return length;
+    }
+
+    private static ByteBuffer encodeHeader(long count, long bodyLength, long lastLsn, int bodyCrc) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putLong(count);
+        header.putLong(bodyLength);
+        header.putLong(lastLsn);
+        header.putInt(bodyCrc);
+        header.putInt(checksum(header.array(), HEADER_SIZE - Integer.BYTES));
+        header.flip();
+        return header;
+    }
+
+    private static int checksum(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    // Read and check the header (version 1 or 2) at the start of 'channel'
+    private static Header readHeader(FileChannel channel, String name)
+            throws IOException, InvalidSnapshotException {
+        long size = channel.size();
+        if (size < V1_HEADER_SIZE) {
+            throw new InvalidSnapshotException("File is too short to be a city snapshot", name, size);
+        }
+        ByteBuffer header = ByteBuffer.allocate((int) Math.min(size, HEADER_SIZE));
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) {
+                break;
+            }
+        }
+        header.flip();
+        if (header.getInt() != MAGIC) {
+            throw new InvalidSnapshotException("Not a city snapshot (wrong magic number)", name, 0);
+        }
+        int version = header.getInt();
+        if (version != VERSION && version != 1) {
+            throw new InvalidSnapshotException("Unsupported snapshot version " + version +
+                    " (expected " + VERSION + ")", name, 4);
+        }
+
+        Header result = new Header();
+        result.size = version == 1 ? V1_HEADER_SIZE : HEADER_SIZE;
+        if (size < result.size) {
+            throw new InvalidSnapshotException("File is too short to be a city snapshot", name, size);
+        }
+        result.count = header.getLong();
+        result.bodyLength = header.getLong();
+        result.lastLsn = version == 1 ? 0 : header.getLong();
+        result.bodyCrc = header.getInt();
+        int headerCrcPosition = result.size - Integer.BYTES;
+        if (header.getInt() != checksum(header.array(), headerCrcPosition)) {
+            throw new InvalidSnapshotException("Header checksum mismatch", name, headerCrcPosition);
+        }
+        if (result.bodyLength != size - result.size) {
+            throw new InvalidSnapshotException("Body length " + result.bodyLength + " does not match file size " +
+                    size + " (truncated file?)", name, 16);
+        }
+        if (result.bodyLength > Integer.MAX_VALUE) {
+            throw new InvalidSnapshotException("Snapshot body is larger than 2 GB", name, result.size);
+        }
+        if (result.count < 0 || result.count > result.bodyLength) {
+            throw new InvalidSnapshotException("Invalid record count " + result.count, name, 8);
+        }
+        if (result.lastLsn < 0) {
+            throw new InvalidSnapshotException("Invalid log position " + result.lastLsn, name, 24);
+        }
+        return result;
+    }
+
+    /**
+     * Last mutation log LSN contained in the snapshot (0 for version 1
+     * files and snapshots saved without a log)
+     */
+    public static long readLastLsn(Path file) throws IOException, InvalidSnapshotException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return readHeader(channel, file.toString()).lastLsn;
+        }
+    }
+
+    /**
+     * Load a snapshot into 'manager' (existing buildings are kept;
+     * buildings whose ID is already present are reported as duplicates)
+     *
+     * The manager's capacity limit is not applied: every building in the
+     * snapshot is restored, even if that leaves the city above the limit
+     * (further addBuilding() calls are then rejected as usual).
+     *
+     * The whole file is verified and decoded before the first building is
+     * added, so a damaged file never leaves a partly loaded city.
+     */
+    public static IngestReport load(Path file, BuildingManager manager)
+            throws IOException, InvalidSnapshotException {
+        long start = System.nanoTime();
+        return restore(read(file), manager, start);
+    }
+
+    /**
+     * Verify and decode every building of a snapshot without touching any
+     * manager (lets a caller replace its city only once the file is known
+     * to be good)
+     */
+    static List<AbstractBuilding> read(Path file) throws IOException, InvalidSnapshotException {
+        String name = file.toString();
+        List<AbstractBuilding> buildings;
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            Header header = readHeader(channel, name);
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+            // BODY - checksum, then decode straight from the mapping
+            ByteBuffer body = mapped.slice(header.size, (int) header.bodyLength);
+            CRC32C bodyCrc = new CRC32C();
+            bodyCrc.update(body.duplicate());
+            if ((int) bodyCrc.getValue() != header.bodyCrc) {
+                throw new InvalidSnapshotException("Body checksum mismatch", name, header.size);
+            }
+
+            BuildingCodec.BinaryReader reader = new BuildingCodec.BinaryReader(body);
+            buildings = new ArrayList<>((int) header.count);
+            for (long i = 0; i < header.count; i++) {
+                try {
+                    buildings.add(BuildingCodec.decode(reader));
+                } catch (RuntimeException e) {
+                    throw new InvalidSnapshotException("Corrupt building record " + i + ": " + e,
+                            name, header.size + body.position());
+                }
+            }
+            if (body.hasRemaining()) {
+                throw new InvalidSnapshotException(body.remaining() + " unexpected bytes after the last record",
+                        name, header.size + body.position());
+            }
+        }
+        return buildings;
+    }
+
+    /**
+     * Hand decoded buildings to 'manager' (see load())
+     */
+    static IngestReport restore(List<AbstractBuilding> buildings, BuildingManager manager, long start) {
+        // ADD - a few large batches instead of one lock round per building
+        IngestReport report = new IngestReport();
+        for (int from = 0; from < buildings.size(); from += LOAD_BATCH_SIZE) {
+            int to = Math.min(from + LOAD_BATCH_SIZE, buildings.size());
+            manager.restoreBatch(buildings.subList(from, to), report);
+            report.batchDone();
+        }
+        report.setElapsedNanos(System.nanoTime() - start);
+        return report;
+    }
+}
@@ -0,0 +1,182 @@
+package smartcity;
+
+import java.util.Arrays;
+
+/**
+ * MODULE 5: CityStatistics - Running aggregates for a BuildingManager
+ *
+ * Instead of recomputing statistics by visiting every building, the
+ * manager updates these totals on every add, remove, status change and
+ * setter call. Reading any statistic is then O(1).
+ *
+ * getStatistics() on the manager returns a COPY, so a snapshot can be
+ * kept, displayed or merged with other snapshots without locking.
+ */
+public class CityStatistics {
+
+    private static final int STATUS_COUNT = BuildingStatus.values().length;
+    private static final int TYPE_COUNT = BuildingType.values().length;
+
+    private int buildingCount;
+    private final int[] countByStatus = new int[STATUS_COUNT];
+    private final int[] countByType = new int[TYPE_COUNT];
+    private double totalArea;
+    private long totalCapacity;
+    private double totalMaintenanceCost;
+
+    // Extremes (filled from the sorted range indexes when a snapshot is taken)
+    private int minCapacity;
+    private int maxCapacity;
+    private double minArea;
+    private double maxArea;
+
+    // Package-private: only BuildingManager keeps the running totals
+    CityStatistics() {
+    }
+
+    // RUNNING UPDATES (called by BuildingManager)
+
+    // The values come from the columns - what the building is indexed under
+
+    void buildingAdded(BuildingColumns columns, int slot) {
+        buildingCount++;
+        countByStatus[columns.getStatus(slot).ordinal()]++;
+        countByType[columns.getType(slot).ordinal()]++;
+        totalArea += columns.getTotalArea(slot);
+        totalCapacity += columns.getCapacity(slot);
+        totalMaintenanceCost += columns.getMaintenanceCost(slot);
+    }
+
+    void buildingRemoved(BuildingColumns columns, int slot) {
+        buildingCount--;
+        countByStatus[columns.getStatus(slot).ordinal()]--;
+        countByType[columns.getType(slot).ordinal()]--;
+        totalArea -= columns.getTotalArea(slot);
+        totalCapacity -= columns.getCapacity(slot);
+        totalMaintenanceCost -= columns.getMaintenanceCost(slot);
+    }
+
+    void statusChanged(BuildingStatus oldStatus, BuildingStatus newStatus) {
+        countByStatus[oldStatus.ordinal()]--;
+        countByStatus[newStatus.ordinal()]++;
+    }
+
+    void adjust(double areaDelta, long capacityDelta, double maintenanceDelta) {
+        totalArea += areaDelta;
+        totalCapacity += capacityDelta;
+        totalMaintenanceCost += maintenanceDelta;
+    }
+
+    void setExtremes(int minCapacity, int maxCapacity, double minArea, double maxArea) {
+        this.minCapacity = minCapacity;
+        this.maxCapacity = maxCapacity;
+        this.minArea = minArea;
+        this.maxArea = maxArea;
+    }
+
+    void reset() {
+        buildingCount = 0;
+        Arrays.fill(countByStatus, 0);
+        Arrays.fill(countByType, 0);
+        totalArea = 0;
+        totalCapacity = 0;
+        totalMaintenanceCost = 0;
+        setExtremes(0, 0, 0, 0);
+    }
+
+    /**
+     * Independent copy of the current values
+     */
+    CityStatistics copy() {
+        CityStatistics copy = new CityStatistics();
+        copy.merge(this);
+        return copy;
+    }
+
+    /**
+     * Add another set of statistics to this one (e.g. combining districts)
+     */
+    void merge(CityStatistics other) {
+        if (other.buildingCount == 0) {
+            return;
+        }
+        if (buildingCount == 0) {
+            setExtremes(other.minCapacity, other.maxCapacity, other.minArea, other.maxArea);
+        } else {
+            setExtremes(Math.min(minCapacity, other.minCapacity), Math.max(maxCapacity, other.maxCapacity),
+                    Math.min(minArea, other.minArea), Math.max(maxArea, other.maxArea));
+        }
+        buildingCount += other.buildingCount;
+        for (int i = 0; i < STATUS_COUNT; i++) {
+            countByStatus[i] += other.countByStatus[i];
+        }
+        for (int i = 0; i < TYPE_COUNT; i++) {
+            countByType[i] += other.countByType[i];
+        }
+        totalArea += other.totalArea;
+        totalCapacity += other.totalCapacity;
+        totalMaintenanceCost += other.totalMaintenanceCost;
+    }
+
+    // GETTERS - all O(1)
+
+    public int getBuildingCount() { return buildingCount; }
+    public int getCount(BuildingStatus status) { return countByStatus[status.ordinal()]; }
+    public int getCount(BuildingType type) { return countByType[type.ordinal()]; }
+    public double getTotalArea() { return totalArea; }
+    public long getTotalCapacity() { return totalCapacity; }
+    public double getTotalMaintenanceCost() { return totalMaintenanceCost; }
+    public int getMinCapacity() { return minCapacity; }
+    public int getMaxCapacity() { return maxCapacity; }
+    public double getMinArea() { return minArea; }
+    public double getMaxArea() { return maxArea; }
+
+    public int getUsableCount() {
+        int usable = 0;
+        for (BuildingStatus status : BuildingStatus.values()) {
+            if (status.isUsable()) {
+                usable += countByStatus[status.ordinal()];
+            }
+        }
+        return usable;
+    }
+
+    public int getCriticalInfrastructureCount() {
+        int critical = 0;
+        for (BuildingType type : BuildingType.values()) {
+            if (type.isCriticalInfrastructure()) {
+                critical += countByType[type.ordinal()];
+            }
+        }
+        return critical;
+    }
+
+    public double getAverageArea() {
+        return buildingCount == 0 ? 0 : totalArea / buildingCount;
+    }
+
+    /**
+     * Print the statistics report
+     */
+    public void display() {
+        if (buildingCount == 0) {
+            System.out.println("\nNo buildings to display statistics!");
+            return;
+        }
+
+        int operational = getUsableCount();
+
+        System.out.println("\n=== City Statistics ===");
+        System.out.println("Total Buildings: " + buildingCount);
+        System.out.println("Operational: " + operational);
+        System.out.println("Under Maintenance/Closed: " + (buildingCount - operational));
+        System.out.println("Total Area: " + String.format("%.2f", totalArea) + " sq meters");
+        System.out.println("Total Capacity: " + totalCapacity + " people");
+        System.out.println("Average Building Size: " +
+                String.format("%.2f", getAverageArea()) + " sq meters");
+        System.out.println("Smallest / Largest Building: " + String.format("%.2f", minArea) +
+                " / " + String.format("%.2f", maxArea) + " sq meters");
+        System.out.println("Capacity Range: " + minCapacity + " - " + maxCapacity + " people");
+        System.out.println("Total Maintenance Cost: $" + String.format("%.2f", totalMaintenanceCost));
+    }
+}
@@ -0,0 +1,636 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * MODULE 5: ConcurrentBuildingManager - Thread-safe BuildingManager
+ *
+ * This demonstrates:
+ * - STAMPEDLOCK with OPTIMISTIC READS: counts, sizes and the ID lookup are
+ *   read without taking any lock and only re-read under a read lock if a
+ *   write happened meanwhile; every lookup that walks an index (names,
+ *   filters, ranges, the slot store) takes the read lock
+ * - WRITE LOCK around every mutation (add, remove, update, clear) and
+ *   around the index updates triggered by AbstractBuilding setters
+ * - GROUP COMMIT with a MutationLog: the fsync wait happens outside the lock
+ *
+ * Lazy views of the base class (type/status views, range iterables,
+ * query candidates) are returned as copies taken under the read lock,
+ * so they can be used safely while other threads keep writing.
+ *
+ * ConcurrentBuildingManagerThroughputTest (test sources) measures read
+ * throughput against thread count for a 95% read / 5% write mix.
+ *
+ * Note: a setter updates the building itself first and the indexes right
+ * after (both inside the building's monitor), so a reader may briefly see
+ * the new value before the building has moved to its new index bucket.
+ */
+public class ConcurrentBuildingManager extends BuildingManager {
+
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * Read operation that may throw BuildingNotFoundException
+     */
+    @FunctionalInterface
+    private interface Read<T> {
+        T run() throws BuildingNotFoundException;
+    }
+
+    public ConcurrentBuildingManager() {
+        super();
+    }
+
+    public ConcurrentBuildingManager(int maxBuildings) {
+        super(maxBuildings);
+    }
+
+    /**
+     * OPTIMISTIC READ: read without locking, keep the result if no writer
+     * interfered, otherwise read again under the read lock.
+     *
+     * Only for reads of plain fields (a size, a counter): they cannot fail
+     * or loop on a half-updated structure. Anything that traverses a map,
+     * set, tree or the slot store goes through locked() instead.
+     */
+    private <T> T optimistic(Supplier<T> fieldRead) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            T result = fieldRead.get();
+            if (lock.validate(stamp)) {
+                return result;
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return fieldRead.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * OPTIMISTIC LOOKUP: like optimistic(), for a single HashMap.get().
+     * A writer may be resizing or changing the map, so the unlocked read
+     * can return a wrong entry or even throw; validate() then fails and the
+     * lookup is repeated under the read lock. An exception from a read that
+     * validates is a real one and is rethrown.
+     */
+    private <T> T optimisticLookup(Supplier<T> mapRead) {
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            try {
+                T result = mapRead.get();
+                if (lock.validate(stamp)) {
+                    return result;
+                }
+            } catch (RuntimeException e) {
+                if (lock.validate(stamp)) {
+                    throw e;
+                }
+            }
+        }
+
+        stamp = lock.readLock();
+        try {
+            return mapRead.get();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * Run a block under the read lock (every lookup, traversal, printing)
+     */
+    private <T> T locked(Read<T> operation) throws BuildingNotFoundException {
+        long stamp = lock.readLock();
+        try {
+            return operation.run();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    private <T> T lockedUnchecked(Read<T> operation) {
+        try {
+            return locked(operation);
+        } catch (BuildingNotFoundException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    // WRITE OPERATIONS - exclusive lock
+    // The building's monitor is taken first (same order as its synchronized
+    // setters), so no setter can change it while it is being (un)indexed.
+
+    @Override
+    public void addBuilding(AbstractBuilding building) throws CityCapacityException {
+        synchronized (building) {
+            long stamp = lock.writeLock();
+            try {
+                super.addBuilding(building);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        super.commitLog();
+    }
+
+    /**
+     * One write lock for the whole batch instead of one per building
+     * (the buildings of a batch must not be modified while it is added)
+     */
+    @Override
+    void addBatch(List<AbstractBuilding> batch, IngestReport report) {
+        long stamp = lock.writeLock();
+        try {
+            super.addBatch(batch, report);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    void restoreBatch(List<AbstractBuilding> batch, IngestReport report) {
+        long stamp = lock.writeLock();
+        try {
+            super.restoreBatch(batch, report);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void removeBuilding(int index) throws BuildingNotFoundException {
+        boolean removed = false;
+        while (!removed) {
+            AbstractBuilding target = getBuilding(index);
+            synchronized (target) {
+                long stamp = lock.writeLock();
+                try {
+                    // Another thread may have shifted the positions meanwhile
+                    if (super.getBuilding(index) == target) {
+                        super.removeBuilding(index);
+                        removed = true;
+                    }
+                } finally {
+                    lock.unlockWrite(stamp);
+                }
+            }
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void removeBuilding(AbstractBuilding building) throws BuildingNotFoundException {
+        synchronized (building) {
+            long stamp = lock.writeLock();
+            try {
+                super.removeBuilding(building);
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void updateBuilding(int index, AbstractBuilding newBuilding) throws BuildingNotFoundException {
+        boolean updated = false;
+        while (!updated) {
+            AbstractBuilding target = getBuilding(index);
+            synchronized (target) {
+                synchronized (newBuilding) {
+                    long stamp = lock.writeLock();
+                    try {
+                        if (super.getBuilding(index) == target) {
+                            super.updateBuilding(index, newBuilding);
+                            updated = true;
+                        }
+                    } finally {
+                        lock.unlockWrite(stamp);
+                    }
+                }
+            }
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void clearAllBuildings() {
+        long stamp = lock.writeLock();
+        try {
+            super.clearAllBuildings();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void setMaxBuildings(int maxBuildings) {
+        long stamp = lock.writeLock();
+        try {
+            super.setMaxBuildings(maxBuildings);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // MUTATION LOG - records are appended under the write lock, but waiting
+    // for them to reach the disk happens after it is released (the
+    // overrides above and below call super.commitLog()), so concurrent
+    // writers are not serialized behind each other's fsync
+
+    @Override
+    protected void commitLog() {
+        // Called by the base class while the write lock is still held - deferred
+    }
+
+    @Override
+    void applyPut(AbstractBuilding building) {
+        long stamp = lock.writeLock();
+        try {
+            super.applyPut(building);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    void applyRemove(String buildingId) {
+        long stamp = lock.writeLock();
+        try {
+            super.applyRemove(buildingId);
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    void applyClear() {
+        long stamp = lock.writeLock();
+        try {
+            super.applyClear();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    // INDEX UPDATES triggered by AbstractBuilding setters - exclusive lock
+
+    /**
+     * A setter may race with removeBuilding(): the building picked up this
+     * listener before it was removed, so its callback can arrive afterwards.
+     */
+    private boolean stillManaged(AbstractBuilding building) {
+        return building.getChangeListener() == this;
+    }
+
+    /**
+     * TRADE-OFF: the status itself changes lock-free (CAS in
+     * AbstractBuilding.changeStatus), but moving the building between status
+     * buckets, the USABLE bit, the status column, the running counts and the
+     * log record must change together, so this callback takes the write lock.
+     * Concurrent status changes therefore still serialize here; what the CAS
+     * buys is that no transition is lost or applied from a stale status.
+     * Lock-free buckets would need every status-derived index (BitSet,
+     * statistics, query planner sets) to become concurrent as well.
+     */
+    @Override
+    public void statusChanged(AbstractBuilding building, BuildingStatus oldStatus) {
+        long stamp = lock.writeLock();
+        try {
+            if (stillManaged(building)) {
+                super.statusChanged(building, oldStatus);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void nameChanged(AbstractBuilding building, String oldName) {
+        long stamp = lock.writeLock();
+        try {
+            if (stillManaged(building)) {
+                super.nameChanged(building, oldName);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void dimensionsChanged(AbstractBuilding building, int oldFloors,
+                                  double oldTotalArea, int oldCapacity) {
+        long stamp = lock.writeLock();
+        try {
+            if (stillManaged(building)) {
+                super.dimensionsChanged(building, oldFloors, oldTotalArea, oldCapacity);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void maintenanceCostChanged(AbstractBuilding building) {
+        long stamp = lock.writeLock();
+        try {
+            if (stillManaged(building)) {
+                super.maintenanceCostChanged(building);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void attributesChanged(AbstractBuilding building) {
+        long stamp = lock.writeLock();
+        try {
+            if (stillManaged(building)) {
+                super.attributesChanged(building);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    @Override
+    public void locationChanged(AbstractBuilding building, boolean wasLocated, double oldX, double oldY) {
+        long stamp = lock.writeLock();
+        try {
+            if (stillManaged(building)) {
+                super.locationChanged(building, wasLocated, oldX, oldY);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        super.commitLog();
+    }
+
+    // LOOKUPS - read lock, except for the ID map read and the O(1) counts
+
+    @Override
+    public AbstractBuilding getBuilding(int index) throws BuildingNotFoundException {
+        return locked(() -> super.getBuilding(index));
+    }
+
+    @Override
+    public AbstractBuilding findBuildingById(String buildingId) throws BuildingNotFoundException {
+        AbstractBuilding building = optimisticLookup(() -> super.lookupById(buildingId));
+        if (building == null) {
+            throw buildingNotFound(buildingId);
+        }
+        return building;
+    }
+
+    @Override
+    public AbstractBuilding findBuildingByName(String name) throws BuildingNotFoundException {
+        return locked(() -> super.findBuildingByName(name));
+    }
+
+    @Override
+    public int getBuildingCount() {
+        return optimistic(super::getBuildingCount);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return optimistic(super::isEmpty);
+    }
+
+    @Override
+    public int getMaxBuildings() {
+        return optimistic(super::getMaxBuildings);
+    }
+
+    // FILTERS - read lock (each returns a fresh list)
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsByType(BuildingType type) throws BuildingNotFoundException {
+        return locked(() -> super.findBuildingsByType(type));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsByStatus(BuildingStatus status)
+            throws BuildingNotFoundException {
+        return locked(() -> super.findBuildingsByStatus(status));
+    }
+
+    @Override
+    public int countBuildingsByType(BuildingType type) {
+        return optimistic(() -> super.countBuildingsByType(type));
+    }
+
+    @Override
+    public int countBuildingsByStatus(BuildingStatus status) {
+        return optimistic(() -> super.countBuildingsByStatus(status));
+    }
+
+    @Override
+    public int countBuildingsWith(BuildingCapability... required) {
+        return lockedUnchecked(() -> super.countBuildingsWith(required));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsWith(BuildingCapability... required) {
+        return lockedUnchecked(() -> super.findBuildingsWith(required));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsWithout(BuildingCapability required,
+                                                            BuildingCapability missing) {
+        return lockedUnchecked(() -> super.findBuildingsWithout(required, missing));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsByNamePrefix(String prefix, int limit) {
+        return lockedUnchecked(() -> super.findBuildingsByNamePrefix(prefix, limit));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsBySimilarName(String name, int maxEdits, int limit) {
+        return lockedUnchecked(() -> super.findBuildingsBySimilarName(name, maxEdits, limit));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> searchBuildingsByName(String query, int limit) {
+        return lockedUnchecked(() -> super.searchBuildingsByName(query, limit));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findNearestBuildings(double x, double y, int k,
+                                                            BuildingType type, Class<?> capability) {
+        return lockedUnchecked(() -> super.findNearestBuildings(x, y, k, type, capability));
+    }
+
+    /**
+     * 'filter' runs under the read lock, so it must not call back into this
+     * manager (a nested read can queue behind a waiting writer)
+     */
+    @Override
+    public ArrayList<AbstractBuilding> findNearestBuildings(double x, double y, int k,
+                                                            Predicate<AbstractBuilding> filter) {
+        return lockedUnchecked(() -> super.findNearestBuildings(x, y, k, filter));
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> findBuildingsWithinRadius(double x, double y, double radius,
+                                                                 BuildingType type, Class<?> capability) {
+        return lockedUnchecked(() -> super.findBuildingsWithinRadius(x, y, radius, type, capability));
+    }
+
+    /**
+     * Taking a snapshot only copies the chunk directory; once it is taken
+     * it can be read without any lock while writers continue
+     */
+    @Override
+    public BuildingSnapshot snapshot() {
+        long stamp = lock.writeLock();
+        try {
+            return super.snapshot();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public ArrayList<AbstractBuilding> getAllBuildings() {
+        return lockedUnchecked(super::getAllBuildings);
+    }
+
+    // AGGREGATES - read lock (optimistic for a single counter)
+
+    @Override
+    public double calculateTotalMaintenance() {
+        return lockedUnchecked(super::calculateTotalMaintenance);
+    }
+
+    @Override
+    public EnumMap<BuildingType, Double> calculateMaintenanceByType() {
+        return lockedUnchecked(super::calculateMaintenanceByType);
+    }
+
+    @Override
+    public EnumMap<BuildingType, Double> calculateAreaByType() {
+        return lockedUnchecked(super::calculateAreaByType);
+    }
+
+    @Override
+    public EnumMap<BuildingType, Long> calculateCapacityByType() {
+        return lockedUnchecked(super::calculateCapacityByType);
+    }
+
+    @Override
+    public int countCriticalInfrastructure() {
+        return optimistic(super::countCriticalInfrastructure);
+    }
+
+    @Override
+    public CityStatistics getStatistics() {
+        return lockedUnchecked(super::getStatistics);
+    }
+
+    @Override
+    public ArrayList<String> verifyStatistics() {
+        return lockedUnchecked(super::verifyStatistics);
+    }
+
+    // LAZY VIEWS - copied under the read lock so callers never see a torn index
+
+    @Override
+    public Collection<AbstractBuilding> viewBuildingsByType(BuildingType type) {
+        return lockedUnchecked(() -> Collections.unmodifiableList(
+                new ArrayList<>(super.viewBuildingsByType(type))));
+    }
+
+    @Override
+    public Collection<AbstractBuilding> viewBuildingsByStatus(BuildingStatus status) {
+        return lockedUnchecked(() -> Collections.unmodifiableList(
+                new ArrayList<>(super.viewBuildingsByStatus(status))));
+    }
+
+    @Override
+    public Iterable<AbstractBuilding> findBuildingsByCapacityRange(int minCapacity, int maxCapacity) {
+        return lockedUnchecked(() -> copyOf(super.findBuildingsByCapacityRange(minCapacity, maxCapacity)));
+    }
+
+    @Override
+    public Iterable<AbstractBuilding> findBuildingsByAreaRange(double minArea, double maxArea) {
+        return lockedUnchecked(() -> copyOf(super.findBuildingsByAreaRange(minArea, maxArea)));
+    }
+
+    @Override
+    public Iterable<AbstractBuilding> findBuildingsByFloorRange(int minFloors, int maxFloors) {
+        return lockedUnchecked(() -> copyOf(super.findBuildingsByFloorRange(minFloors, maxFloors)));
+    }
+
+    @Override
+    Iterable<AbstractBuilding> iterateAllBuildings() {
+        return lockedUnchecked(() -> copyOf(super.iterateAllBuildings()));
+    }
+
+    @Override
+    int countBuildingsByCapacityRange(int minCapacity, int maxCapacity, int limit) {
+        return lockedUnchecked(() -> super.countBuildingsByCapacityRange(minCapacity, maxCapacity, limit));
+    }
+
+    @Override
+    int countBuildingsByNamePrefix(String prefix) {
+        return lockedUnchecked(() -> super.countBuildingsByNamePrefix(prefix));
+    }
+
+    @Override
+    Iterable<AbstractBuilding> iterateBuildingsByNamePrefix(String prefix) {
+        return lockedUnchecked(() -> copyOf(super.iterateBuildingsByNamePrefix(prefix)));
+    }
+
+    @Override
+    Iterable<AbstractBuilding> iterateBuildingsWith(BuildingCapability... required) {
+        return lockedUnchecked(() -> copyOf(super.iterateBuildingsWith(required)));
+    }
+
+    private static ArrayList<AbstractBuilding> copyOf(Iterable<AbstractBuilding> view) {
+        ArrayList<AbstractBuilding> copy = new ArrayList<>();
+        for (AbstractBuilding building : view) {
+            copy.add(building);
+        }
+        return copy;
+    }
+
+    // DISPLAY - printed under the read lock
+
+    @Override
+    public void displayAllBuildings() {
+        lockedUnchecked(() -> {
+            super.displayAllBuildings();
+            return null;
+        });
+    }
+
+    @Override
+    public void displayBuildingsWithIterator() {
+        lockedUnchecked(() -> {
+            super.displayBuildingsWithIterator();
+            return null;
+        });
+    }
+}
@@ -171,4 +171,54 @@ class CityCapacityException extends Exception {
                 "\nCurrent Buildings: " + currentBuildingCount +
                 "\nMaximum Allowed: " + maxBuildings;
     }
+}
+
+/**
+ * Custom exception for snapshot files that cannot be read
+ * (wrong magic number, unsupported version, checksum mismatch, truncation)
+ */
+class InvalidSnapshotException extends Exception {
+    private String file;
+    private long position;
+
+    public InvalidSnapshotException(String message, String file, long position) {
+        super(message);
+        this.file = file;
+        this.position = position;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public String getDetailedMessage() {
+        return super.getMessage() +
+                "\nFile: " + file +
+                "\nPosition: " + position;
+    }
+}
+
+/**
+ * Custom exception for a mutation log that cannot be replayed
+ * (damaged record in the middle of the log, LSNs out of order)
+ */
+class CorruptLogException extends Exception {
+    private String segment;
+    private long position;
+
+    public CorruptLogException(String message, String segment, long position) {
+        super(message);
+        this.segment = segment;
+        this.position = position;
+    }
+
+    public String getSegment() {
+        return segment;
+    }
+
+    public String getDetailedMessage() {
+        return super.getMessage() +
+                "\nSegment: " + segment +
+                "\nPosition: " + position;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,122 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * MODULE 5: IngestReport - Outcome of a bulk ingestion run
+ *
+ * Filled in by BuildingIngestPipeline (and BuildingManager.addBatch) and
+ * printed once at the end instead of two lines per building.
+ */
+public class IngestReport {
+
+    // Only the first few problems are kept, the rest are just counted
+    static final int MAX_SAMPLES = 10;
+
+    private long accepted;
+    private long duplicates;
+    private long invalid;
+    private long overCapacity;
+    private long batches;
+    private long elapsedNanos;
+    private final ArrayList<String> samples = new ArrayList<>();
+
+    // Package-private: updated by the single pipeline consumer
+
+    void accepted() {
+        accepted++;
+    }
+
+    void duplicate(AbstractBuilding building) {
+        duplicates++;
+        sample("Duplicate ID " + building.getBuildingId() + " (" + building.getName() + ")");
+    }
+
+    void invalid(AbstractBuilding building, String problem) {
+        invalid++;
+        sample("Invalid " + building.getBuildingId() + ": " + problem);
+    }
+
+    // A source row that could not even be turned into a building
+    void invalidRow(long line, String problem) {
+        invalid++;
+        sample("Line " + line + ": " + problem);
+    }
+
+    void overCapacity(AbstractBuilding building) {
+        overCapacity++;
+        sample("City full - rejected " + building.getBuildingId() + " (" + building.getName() + ")");
+    }
+
+    void batchDone() {
+        batches++;
+    }
+
+    void setElapsedNanos(long elapsedNanos) {
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * Add the counts (and as many samples as fit) of another report
+     */
+    void merge(IngestReport other) {
+        accepted += other.accepted;
+        duplicates += other.duplicates;
+        invalid += other.invalid;
+        overCapacity += other.overCapacity;
+        batches += other.batches;
+        for (String message : other.samples) {
+            sample(message);
+        }
+    }
+
+    private void sample(String message) {
+        if (samples.size() < MAX_SAMPLES) {
+            samples.add(message);
+        }
+    }
+
+    public long getAccepted() { return accepted; }
+    public long getDuplicates() { return duplicates; }
+    public long getInvalid() { return invalid; }
+    public long getOverCapacity() { return overCapacity; }
+    public long getBatches() { return batches; }
+    public long getElapsedNanos() { return elapsedNanos; }
+
+    public long getRejected() {
+        return duplicates + invalid + overCapacity;
+    }
+
+    public long getTotal() {
+        return accepted + getRejected();
+    }
+
+    public List<String> getSampleProblems() {
+        return Collections.unmodifiableList(samples);
+    }
+
+    /**
+     * Print the report
+     */
+    public void display() {
+        double seconds = elapsedNanos / 1_000_000_000.0;
+        System.out.println("\n=== Ingestion Report ===");
+        System.out.println("Records: " + getTotal() + " in " + batches + " batches");
+        System.out.println("✓ Added: " + accepted);
+        if (getRejected() > 0) {
+            System.out.println("❌ Rejected: " + getRejected() +
+                    " (duplicates: " + duplicates + ", invalid: " + invalid +
+                    ", over capacity: " + overCapacity + ")");
+            for (String sample : samples) {
+                System.out.println("  - " + sample);
+            }
+            if (getRejected() > samples.size()) {
+                System.out.println("  ... and " + (getRejected() - samples.size()) + " more");
+            }
+        }
+        System.out.println("Time: " + String.format("%.2f", seconds) + " s" +
+                (seconds > 0 ? " (" + String.format("%.0f", getTotal() / seconds) + " records/s)" : ""));
+    }
+}
@@ -42,6 +42,32 @@ public class ModernHospital extends AbstractBuilding implements Serviceable, Acc
         this.licenseNumber = (int)(Math.random() * 100000); // FINAL - set once
     }
 
+    // Restore constructor (snapshot loading)
+    ModernHospital(BuildingFieldReader in) {
+        super(BuildingType.HOSPITAL, in);
+        this.emergencyBeds = in.readInt();
+        this.numberOfDoctors = in.readInt();
+        this.hasEmergencyRoom = in.readBoolean();
+        this.specialization = in.readString();
+        this.wheelchairAccess = in.readBoolean();
+        this.hasElevatorSystem = in.readBoolean();
+        this.accessibleParking = in.readInt();
+        this.licenseNumber = in.readInt();
+    }
+
+    // IMPLEMENTING ABSTRACT METHOD from AbstractBuilding (snapshot/export fields)
+    @Override
+    void visitSpecificFields(BuildingFieldVisitor visitor) {
+        visitor.visitInt("emergencyBeds", emergencyBeds);
+        visitor.visitInt("numberOfDoctors", numberOfDoctors);
+        visitor.visitBoolean("hasEmergencyRoom", hasEmergencyRoom);
+        visitor.visitString("specialization", specialization);
+        visitor.visitBoolean("wheelchairAccess", wheelchairAccess);
+        visitor.visitBoolean("hasElevatorSystem", hasElevatorSystem);
+        visitor.visitInt("accessibleParking", accessibleParking);
+        visitor.visitInt("licenseNumber", licenseNumber);
+    }
+
     // IMPLEMENTING ABSTRACT METHOD from AbstractBuilding
     @Override
     public double calculateMaintenanceCost() {
@@ -156,13 +182,16 @@ public class ModernHospital extends AbstractBuilding implements Serviceable, Acc
     public int getLicenseNumber() { return licenseNumber; } // FINAL variable
     public String getSpecialization() { return specialization; }
     public int getEmergencyBeds() { return emergencyBeds; }
+    public boolean hasEmergencyRoom() { return hasEmergencyRoom; }
 
     // Setters (note: no setter for licenseNumber because it's FINAL)
-    public void setSpecialization(String specialization) {
+    public synchronized void setSpecialization(String specialization) {
         this.specialization = specialization;
+        notifyAttributesChanged(); // not indexed, but logged
     }
 
-    public void setEmergencyBeds(int emergencyBeds) {
+    public synchronized void setEmergencyBeds(int emergencyBeds) {
         this.emergencyBeds = emergencyBeds;
+        notifyMaintenanceCostChanged(); // emergency beds are part of the cost
     }
 }
\ No newline at end of file
@@ -37,8 +37,35 @@ public class ModernOffice extends AbstractBuilding implements Serviceable, Acces
         this.businessLicenseId = "BIZ-" + (int)(Math.random() * 100000); // FINAL
     }
 
+    // Restore constructor (snapshot loading)
+    ModernOffice(BuildingFieldReader in) {
+        super(BuildingType.OFFICE, in);
+        this.companyName = in.readString();
+        this.numberOfEmployees = in.readInt();
+        this.businessType = in.readString();
+        this.hasParkingLot = in.readBoolean();
+        this.parkingSpaces = in.readInt();
+        this.wheelchairAccess = in.readBoolean();
+        this.hasElevatorSystem = in.readBoolean();
+        this.accessibleParking = in.readInt();
+        this.businessLicenseId = in.readString();
+    }
+
     // IMPLEMENTING ABSTRACT METHODS
 
+    @Override
+    void visitSpecificFields(BuildingFieldVisitor visitor) {
+        visitor.visitString("companyName", companyName);
+        visitor.visitInt("numberOfEmployees", numberOfEmployees);
+        visitor.visitString("businessType", businessType);
+        visitor.visitBoolean("hasParkingLot", hasParkingLot);
+        visitor.visitInt("parkingSpaces", parkingSpaces);
+        visitor.visitBoolean("wheelchairAccess", wheelchairAccess);
+        visitor.visitBoolean("hasElevatorSystem", hasElevatorSystem);
+        visitor.visitInt("accessibleParking", accessibleParking);
+        visitor.visitString("businessLicenseId", businessLicenseId);
+    }
+
     @Override
     public double calculateMaintenanceCost() {
         double baseCost = calculateTotalArea() * MAINTENANCE_BASE_RATE;
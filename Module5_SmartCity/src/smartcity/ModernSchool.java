@@ -37,8 +37,35 @@ public class ModernSchool extends AbstractBuilding implements Serviceable, Acces
         this.accreditationId = "EDU-" + (int)(Math.random() * 10000); // FINAL
     }
 
+    // Restore constructor (snapshot loading)
+    ModernSchool(BuildingFieldReader in) {
+        super(BuildingType.SCHOOL, in);
+        this.numberOfClassrooms = in.readInt();
+        this.numberOfTeachers = in.readInt();
+        this.educationLevel = in.readString();
+        this.hasLaboratory = in.readBoolean();
+        this.hasLibrary = in.readBoolean();
+        this.wheelchairAccess = in.readBoolean();
+        this.hasElevatorSystem = in.readBoolean();
+        this.accessibleParking = in.readInt();
+        this.accreditationId = in.readString();
+    }
+
     // IMPLEMENTING ABSTRACT METHODS
 
+    @Override
+    void visitSpecificFields(BuildingFieldVisitor visitor) {
+        visitor.visitInt("numberOfClassrooms", numberOfClassrooms);
+        visitor.visitInt("numberOfTeachers", numberOfTeachers);
+        visitor.visitString("educationLevel", educationLevel);
+        visitor.visitBoolean("hasLaboratory", hasLaboratory);
+        visitor.visitBoolean("hasLibrary", hasLibrary);
+        visitor.visitBoolean("wheelchairAccess", wheelchairAccess);
+        visitor.visitBoolean("hasElevatorSystem", hasElevatorSystem);
+        visitor.visitInt("accessibleParking", accessibleParking);
+        visitor.visitString("accreditationId", accreditationId);
+    }
+
     @Override
     public double calculateMaintenanceCost() {
         double baseCost = calculateTotalArea() * MAINTENANCE_BASE_RATE;
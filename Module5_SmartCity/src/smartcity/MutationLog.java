@@ -0,0 +1,517 @@
+package smartcity;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * MODULE 5: MutationLog - Write-ahead log of BuildingManager mutations
+ *
+ * This demonstrates:
+ * - An APPEND-ONLY LOG: every add, remove, status change and attribute
+ *   change is recorded before the mutating call returns
+ * - GROUP COMMIT: records are buffered in memory while the manager holds
+ *   its lock; after the lock is released, the first committer writes and
+ *   fsyncs everything buffered so far, and the threads that queued behind
+ *   it usually find their records already on disk
+ * - A configurable FSYNC POLICY
+ * - SEGMENTED files named by their first LSN (log sequence number), so
+ *   old segments can be deleted once a snapshot covers them
+ * - CRASH RECOVERY: recover() replays the log into a manager; a torn
+ *   record at the end of the last segment (crash during a write) is cut off
+ *
+ * Records hold absolute values (the whole building for adds and attribute
+ * changes, the new status for status changes), so replaying a record
+ * twice gives the same result.
+ *
+ * Record layout (big endian):
+ *   int length (of the following three fields), long LSN, byte type,
+ *   payload (see BuildingCodec), int CRC32C of LSN, type and payload
+ */
+public class MutationLog implements AutoCloseable {
+
+    /**
+     * When appended records are forced to disk
+     */
+    public enum FsyncPolicy {
+        // fsync while the manager still holds its lock: one fsync per mutation
+        EVERY_COMMIT,
+        // fsync after the lock is released: concurrent mutations share one fsync
+        GROUP_COMMIT,
+        // hand records to the OS only: survives a process crash, not a power failure
+        OS_DEFAULT
+    }
+
+    // Record types
+    static final byte PUT = 1;    // building added or changed (full record)
+    static final byte REMOVE = 2; // building ID
+    static final byte STATUS = 3; // building ID + new status
+    static final byte CLEAR = 4;  // no payload
+
+    public static final long DEFAULT_SEGMENT_SIZE = 64L * 1024 * 1024;
+    static final String SEGMENT_SUFFIX = ".wal";
+
+    // length + CRC around every record, LSN + type inside it
+    private static final int FRAME_BYTES = 2 * Integer.BYTES;
+    private static final int MIN_RECORD_LENGTH = Long.BYTES + 1;
+
+    private static final BuildingStatus[] STATUSES = BuildingStatus.values();
+
+    private final Path directory;
+    private final FsyncPolicy policy;
+    private final long segmentSize;
+
+    // APPEND SIDE (guarded by 'this')
+    private BuildingCodec.BinaryWriter active = new BuildingCodec.BinaryWriter(64 * 1024);
+    private final CRC32C recordCrc = new CRC32C();
+    private long lastLsn;
+    private boolean recovered;
+    private boolean closed;
+
+    // FLUSH SIDE (guarded by flushLock)
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private BuildingCodec.BinaryWriter flushing = new BuildingCodec.BinaryWriter(64 * 1024);
+    private FileChannel segment;
+    private long segmentBytes;
+    private volatile long writtenLsn; // handed to the operating system
+    private volatile long durableLsn; // forced to disk
+
+    // Highest LSN appended by the current thread and not yet committed
+    private final ThreadLocal<long[]> pending = ThreadLocal.withInitial(() -> new long[1]);
+
+    // Statistics
+    private final LongAdder appended = new LongAdder();
+    private final LongAdder writes = new LongAdder();
+    private final LongAdder fsyncs = new LongAdder();
+
+    public MutationLog(Path directory, FsyncPolicy policy) throws IOException {
+        this(directory, policy, DEFAULT_SEGMENT_SIZE);
+    }
+
+    public MutationLog(Path directory, FsyncPolicy policy, long segmentSize) throws IOException {
+        if (segmentSize <= 0) {
+            throw new IllegalArgumentException("Segment size must be positive");
+        }
+        this.directory = directory;
+        this.policy = policy;
+        this.segmentSize = segmentSize;
+        Files.createDirectories(directory);
+    }
+
+    public FsyncPolicy getPolicy() {
+        return policy;
+    }
+
+    public synchronized long getLastLsn() {
+        return lastLsn;
+    }
+
+    public long getDurableLsn() {
+        return policy == FsyncPolicy.OS_DEFAULT ? writtenLsn : durableLsn;
+    }
+
+    // RECOVERY
+
+    /**
+     * Replay the whole log into 'manager' and then log its mutations from
+     * now on. Must be called (once) before anything is logged.
+     *
+     * @return number of records applied
+     */
+    public long recover(BuildingManager manager) throws IOException, CorruptLogException {
+        return recover(manager, 0);
+    }
+
+    /**
+     * Same as recover(manager), for a manager that was loaded from a
+     * snapshot containing every record up to 'snapshotLsn'
+     * (see CitySnapshotFile.readLastLsn()): only the tail is replayed
+     */
+    public long recover(BuildingManager manager, long snapshotLsn) throws IOException, CorruptLogException {
+        long applied = replay(manager, snapshotLsn);
+        manager.setMutationLog(this);
+        return applied;
+    }
+
+    /**
+     * Apply every record with an LSN above 'afterLsn' (older records are
+     * already contained in a snapshot the manager was loaded from)
+     */
+    synchronized long replay(BuildingManager manager, long afterLsn) throws IOException, CorruptLogException {
+        if (recovered) {
+            throw new IllegalStateException("The mutation log has already been recovered");
+        }
+        List<Path> segments = listSegments();
+        if (!segments.isEmpty() && firstLsnOf(segments.get(0)) > afterLsn + 1) {
+            // The segments in between were discarded after a newer snapshot was taken
+            throw new CorruptLogException("Log starts at LSN " + firstLsnOf(segments.get(0)) +
+                    " but the snapshot only contains records up to LSN " + afterLsn +
+                    " (older snapshot?)", segments.get(0).toString(), 0);
+        }
+        long applied = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            applied += replaySegment(segments.get(i), i == segments.size() - 1, manager, afterLsn);
+        }
+        lastLsn = Math.max(lastLsn, afterLsn);
+        writtenLsn = lastLsn;
+        durableLsn = lastLsn;
+        recovered = true; // new records go to a new segment starting at lastLsn + 1
+        return applied;
+    }
+
+    private long replaySegment(Path file, boolean lastSegment, BuildingManager manager, long afterLsn)
+            throws IOException, CorruptLogException {
+        long applied = 0;
+        long validEnd;
+        String name = file.toString();
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new CorruptLogException("Segment is larger than 2 GB", name, 0);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            CRC32C crc = new CRC32C();
+            int position = 0;
+
+            while (true) {
+                int remaining = (int) size - position;
+                if (remaining < FRAME_BYTES + MIN_RECORD_LENGTH) {
+                    break; // end of segment (or a torn length field)
+                }
+                int length = mapped.getInt(position);
+                if (length < MIN_RECORD_LENGTH || length > remaining - FRAME_BYTES) {
+                    break; // torn or garbage length
+                }
+                ByteBuffer record = mapped.slice(position + Integer.BYTES, length);
+                crc.reset();
+                crc.update(record.duplicate());
+                if ((int) crc.getValue() != mapped.getInt(position + Integer.BYTES + length)) {
+                    break; // torn write
+                }
+
+                long lsn = record.getLong();
+                byte type = record.get();
+                if (lsn <= lastLsn) {
+                    throw new CorruptLogException("LSN " + lsn + " follows LSN " + lastLsn, name, position);
+                }
+                if (lsn > afterLsn) {
+                    try {
+                        apply(type, new BuildingCodec.BinaryReader(record), manager);
+                    } catch (RuntimeException e) {
+                        throw new CorruptLogException("Cannot apply record " + lsn + ": " + e, name, position);
+                    }
+                    applied++;
+                }
+                lastLsn = lsn;
+                position += FRAME_BYTES + length;
+            }
+
+            validEnd = position;
+            if (validEnd < size && !lastSegment) {
+                throw new CorruptLogException("Damaged record in the middle of the log", name, validEnd);
+            }
+        }
+
+        if (validEnd == 0 && lastSegment) {
+            // Not even the first record made it to disk. The next record gets
+            // this segment's first LSN again, and with it the same file name.
+            Files.delete(file);
+        } else if (validEnd < Files.size(file)) {
+            // Torn tail of the last segment: the crash happened while it was written
+            try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+                channel.truncate(validEnd);
+            }
+        }
+        return applied;
+    }
+
+    private static void apply(byte type, BuildingCodec.BinaryReader in, BuildingManager manager) {
+        switch (type) {
+            case PUT:
+                manager.applyPut(BuildingCodec.decode(in));
+                break;
+            case REMOVE:
+                manager.applyRemove(in.readString());
+                break;
+            case STATUS:
+                String buildingId = in.readString();
+                manager.applyStatus(buildingId, in.readEnum(STATUSES));
+                break;
+            case CLEAR:
+                manager.applyClear();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown record type " + type);
+        }
+    }
+
+    // APPEND - called by BuildingManager while it holds its lock
+
+    void logPut(AbstractBuilding building) {
+        long lsn;
+        synchronized (this) {
+            int start = beginRecord(PUT);
+            active.write(building);
+            lsn = endRecord(start);
+        }
+        appendedRecord(lsn);
+    }
+
+    void logRemove(String buildingId) {
+        long lsn;
+        synchronized (this) {
+            int start = beginRecord(REMOVE);
+            active.visitString("id", buildingId);
+            lsn = endRecord(start);
+        }
+        appendedRecord(lsn);
+    }
+
+    void logStatus(AbstractBuilding building, BuildingStatus status) {
+        long lsn;
+        synchronized (this) {
+            int start = beginRecord(STATUS);
+            active.visitString("id", building.getBuildingId());
+            active.visitEnum("status", status);
+            lsn = endRecord(start);
+        }
+        appendedRecord(lsn);
+    }
+
+    void logClear() {
+        long lsn;
+        synchronized (this) {
+            lsn = endRecord(beginRecord(CLEAR));
+        }
+        appendedRecord(lsn);
+    }
+
+    // Frame start: length placeholder, LSN and type (length is filled in by endRecord)
+    private int beginRecord(byte type) {
+        if (!recovered) {
+            throw new IllegalStateException("recover() must be called before logging");
+        }
+        if (closed) {
+            throw new IllegalStateException("The mutation log is closed");
+        }
+        int start = active.buffer().position();
+        active.visitInt("length", 0);
+        active.writeLong(lastLsn + 1);
+        active.writeByte(type);
+        return start;
+    }
+
+    // Frame end: fill in the length, append the checksum and take the LSN
+    private long endRecord(int start) {
+        ByteBuffer buffer = active.buffer();
+        int length = buffer.position() - start - Integer.BYTES;
+        buffer.putInt(start, length);
+        recordCrc.reset();
+        recordCrc.update(buffer.slice(start + Integer.BYTES, length));
+        active.visitInt("crc", (int) recordCrc.getValue());
+        return ++lastLsn;
+    }
+
+    private void appendedRecord(long lsn) {
+        appended.increment();
+        pending.get()[0] = lsn;
+        if (policy == FsyncPolicy.EVERY_COMMIT) {
+            flushTo(lsn); // still inside the manager's lock
+        }
+    }
+
+    // COMMIT - called by BuildingManager after it has released its lock
+
+    /**
+     * Wait until the records appended by this thread are durable
+     * (written to the OS for OS_DEFAULT, forced to disk otherwise)
+     *
+     * @throws UncheckedIOException if the log cannot be written
+     */
+    void commit() {
+        long[] mine = pending.get();
+        long lsn = mine[0];
+        if (lsn == 0) {
+            return;
+        }
+        mine[0] = 0;
+        flushTo(lsn);
+    }
+
+    /**
+     * GROUP COMMIT: the thread holding flushLock writes every buffered
+     * record with a single write (and fsync); the threads waiting behind it
+     * return at once if that covered their records
+     */
+    private void flushTo(long lsn) {
+        boolean force = policy != FsyncPolicy.OS_DEFAULT;
+        if (lsn <= (force ? durableLsn : writtenLsn)) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            if (lsn <= (force ? durableLsn : writtenLsn)) {
+                return; // covered by the previous group
+            }
+
+            long firstLsn;
+            long upTo;
+            synchronized (this) {
+                // Swap buffers: appends continue into the empty one meanwhile
+                BuildingCodec.BinaryWriter full = active;
+                active = flushing;
+                flushing = full;
+                firstLsn = writtenLsn + 1;
+                upTo = lastLsn;
+            }
+
+            ByteBuffer data = flushing.buffer();
+            data.flip();
+            if (data.hasRemaining()) {
+                FileChannel channel = segmentFor(firstLsn);
+                while (data.hasRemaining()) {
+                    segmentBytes += channel.write(data);
+                }
+                writes.increment();
+            }
+            data.clear();
+            writtenLsn = upTo;
+
+            if (force && segment != null) {
+                segment.force(false);
+                fsyncs.increment();
+                durableLsn = upTo;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write the mutation log in " + directory, e);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    // Current segment, or a new one once the current one is full
+    private FileChannel segmentFor(long firstLsn) throws IOException {
+        if (segment != null && segmentBytes < segmentSize) {
+            return segment;
+        }
+        closeSegment();
+        segment = FileChannel.open(directory.resolve(segmentName(firstLsn)),
+                StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        segmentBytes = 0;
+        return segment;
+    }
+
+    private void closeSegment() throws IOException {
+        if (segment != null) {
+            segment.force(false); // a full segment is always durable
+            segment.close();
+            segment = null;
+        }
+    }
+
+    // SEGMENT FILES - named by their first LSN, so names sort in log order
+
+    static String segmentName(long firstLsn) {
+        return String.format("%020d", firstLsn) + SEGMENT_SUFFIX;
+    }
+
+    static long firstLsnOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(file -> file.getFileName().toString().matches("\\d{20}\\" + SEGMENT_SUFFIX))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    // COMPACTION - called by CheckpointManager
+
+    /**
+     * Close the current segment, so the next record starts a new one.
+     * Called before a checkpoint: every record in the closed segments is
+     * then at or below the checkpoint's LSN, and they can all be discarded.
+     */
+    void rollSegment() throws IOException {
+        flushLock.lock();
+        try {
+            closeSegment();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Delete the segments whose records all have an LSN of at most
+     * 'lsn' (they are contained in a snapshot). A segment ends where the
+     * next one starts, so the newest segment is never deleted.
+     *
+     * @return number of segments deleted
+     */
+    int discardSegmentsUpTo(long lsn) throws IOException {
+        List<Path> segments = listSegments();
+        int deleted = 0;
+        for (int i = 0; i + 1 < segments.size(); i++) {
+            if (firstLsnOf(segments.get(i + 1)) > lsn + 1) {
+                break; // this segment holds records after 'lsn'
+            }
+            Files.delete(segments.get(i));
+            deleted++;
+        }
+        return deleted;
+    }
+
+    /**
+     * Write out everything that is still buffered and close the current segment
+     */
+    @Override
+    public void close() throws IOException {
+        long upTo;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            upTo = lastLsn;
+        }
+        flushLock.lock();
+        try {
+            if (upTo > writtenLsn) {
+                flushTo(upTo);
+            }
+            closeSegment();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Print how many records shared each write / fsync
+     */
+    public void displayStatistics() {
+        long records = appended.sum();
+        long fsyncCount = fsyncs.sum();
+        System.out.println("\n=== Mutation Log ===");
+        System.out.println("Directory: " + directory + " (" + policy + ")");
+        System.out.println("Records appended: " + records + " (last LSN " + getLastLsn() + ")");
+        System.out.println("Writes: " + writes.sum() + ", fsyncs: " + fsyncCount);
+        if (fsyncCount > 0) {
+            System.out.println("Records per fsync: " + String.format("%.1f", (double) records / fsyncCount));
+        }
+    }
+}
@@ -0,0 +1,114 @@
+package smartcity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MODULE 5: OutputCapture - Per-thread capture of System.out
+ *
+ * While installed, System.out is replaced by a stream that checks a
+ * THREADLOCAL buffer: threads that started a capture write into their own
+ * buffer, every other thread still writes to the original console.
+ *
+ * Note: System.out is a PROCESS-WIDE setting. While installed, every
+ * thread's output goes through the routing stream (uncaptured threads only
+ * pay one ThreadLocal lookup per write), and a System.setOut() made by
+ * other code in the meantime is kept - uninstall() only restores the
+ * console if System.out is still the routing stream. Always pair
+ * install() with uninstall() in a finally block, and begin() with end().
+ */
+class OutputCapture {
+
+    private static final ThreadLocal<ByteArrayOutputStream> BUFFER = new ThreadLocal<>();
+
+    // OutputStream that sends each write to the calling thread's buffer (if any)
+    private static class RoutingOutputStream extends OutputStream {
+        private final PrintStream console;
+
+        RoutingOutputStream(PrintStream console) {
+            this.console = console;
+        }
+
+        @Override
+        public void write(int b) {
+            ByteArrayOutputStream buffer = BUFFER.get();
+            if (buffer != null) {
+                buffer.write(b);
+            } else {
+                console.write(b);
+            }
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) {
+            ByteArrayOutputStream buffer = BUFFER.get();
+            if (buffer != null) {
+                buffer.write(bytes, offset, length);
+            } else {
+                console.write(bytes, offset, length);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (BUFFER.get() == null) {
+                console.flush();
+            }
+        }
+    }
+
+    private static PrintStream console;
+    private static PrintStream routing;
+    private static int installCount;
+
+    private OutputCapture() {}
+
+    /**
+     * Route System.out through the capturing stream (nested calls are counted)
+     */
+    static synchronized void install() {
+        if (installCount++ == 0) {
+            console = System.out;
+            routing = new PrintStream(new RoutingOutputStream(console), true, StandardCharsets.UTF_8);
+            System.setOut(routing);
+        }
+    }
+
+    /**
+     * Restore the original System.out once the last user is done
+     * (an uninstall() without a matching install() is ignored)
+     */
+    static synchronized void uninstall() {
+        if (installCount == 0) {
+            return;
+        }
+        if (--installCount == 0) {
+            routing.flush();
+            if (System.out == routing) {
+                System.setOut(console);
+            }
+            console = null;
+            routing = null;
+        }
+    }
+
+    /**
+     * Start capturing everything the current thread prints
+     */
+    static void begin() {
+        BUFFER.set(new ByteArrayOutputStream());
+    }
+
+    /**
+     * Stop capturing and return what the current thread printed
+     */
+    static String end() {
+        System.out.flush();
+        ByteArrayOutputStream buffer = BUFFER.get();
+        BUFFER.remove();
+        return buffer == null ? "" : buffer.toString(StandardCharsets.UTF_8);
+    }
+}
@@ -39,8 +39,33 @@ public final class PublicPark extends AbstractBuilding implements Accessible {
         this.parkRegistrationId = "PARK-" + (int)(Math.random() * 10000); // FINAL
     }
 
+    // Restore constructor (snapshot loading)
+    PublicPark(BuildingFieldReader in) {
+        super(BuildingType.PARK, in);
+        this.greenSpaceArea = in.readDouble();
+        this.hasPlayground = in.readBoolean();
+        this.hasFountain = in.readBoolean();
+        this.numberOfBenches = in.readInt();
+        this.parkType = in.readString();
+        this.wheelchairAccess = in.readBoolean();
+        this.accessibleParking = in.readInt();
+        this.parkRegistrationId = in.readString();
+    }
+
     // IMPLEMENTING ABSTRACT METHODS
 
+    @Override
+    void visitSpecificFields(BuildingFieldVisitor visitor) {
+        visitor.visitDouble("greenSpaceArea", greenSpaceArea);
+        visitor.visitBoolean("hasPlayground", hasPlayground);
+        visitor.visitBoolean("hasFountain", hasFountain);
+        visitor.visitInt("numberOfBenches", numberOfBenches);
+        visitor.visitString("parkType", parkType);
+        visitor.visitBoolean("wheelchairAccess", wheelchairAccess);
+        visitor.visitInt("accessibleParking", accessibleParking);
+        visitor.visitString("parkRegistrationId", parkRegistrationId);
+    }
+
     @Override
     public double calculateMaintenanceCost() {
         double greenSpaceCost = greenSpaceArea * 0.3;
@@ -0,0 +1,210 @@
+package smartcity;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * MODULE 5: ServiceRequestExecutor - Asynchronous service requests
+ *
+ * This demonstrates:
+ * - VIRTUAL THREADS: one cheap thread per request, so tens of thousands of
+ *   requests can wait at the same time without a large thread pool
+ * - SEMAPHORE per building: at most Serviceable.MAX_SERVICE_REQUESTS
+ *   requests are served by one building at a time; the rest wait in a
+ *   fair queue until a permit is free or the timeout expires
+ * - COMPLETABLEFUTURE: callers get a ServiceResult when the request is
+ *   done, or the failure as a custom exception
+ *
+ * What provideService() prints is captured on the request's own thread
+ * (OutputCapture) and returned in the ServiceResult instead of being
+ * printed, so thousands of requests do not interleave on the console.
+ * System.out is only rerouted while at least one provideService() call
+ * is running.
+ *
+ * Example:
+ *   try (ServiceRequestExecutor executor = new ServiceRequestExecutor(5, TimeUnit.SECONDS)) {
+ *       executor.submit(hospital, "Emergency Care")
+ *               .thenAccept(result -> System.out.println("Cost: $" + result.getCost()));
+ *   }
+ */
+public class ServiceRequestExecutor implements AutoCloseable {
+
+    public static final long DEFAULT_TIMEOUT_SECONDS = 30;
+
+    private final ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Permits of one building plus the number of requests using them
+     * ('requests' is only changed inside ConcurrentHashMap.compute)
+     */
+    private static final class BuildingPermits {
+        final Semaphore semaphore = new Semaphore(Serviceable.MAX_SERVICE_REQUESTS, true); // FAIR queue
+        int requests;
+    }
+
+    // Permits per building ID: created by the first request, removed again
+    // when its last request is done (no entry is kept for removed buildings)
+    private final ConcurrentHashMap<String, BuildingPermits> permits = new ConcurrentHashMap<>();
+
+    private final long timeout;
+    private final TimeUnit timeoutUnit;
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    public ServiceRequestExecutor() {
+        this(DEFAULT_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public ServiceRequestExecutor(long timeout, TimeUnit timeoutUnit) {
+        if (timeout < 0) {
+            throw new IllegalArgumentException("Timeout cannot be negative");
+        }
+        this.timeout = timeout;
+        this.timeoutUnit = timeoutUnit;
+    }
+
+    private BuildingPermits claimPermits(AbstractBuilding building) {
+        return permits.compute(building.getBuildingId(), (id, entry) -> {
+            if (entry == null) {
+                entry = new BuildingPermits();
+            }
+            entry.requests++;
+            return entry;
+        });
+    }
+
+    private void unclaimPermits(AbstractBuilding building) {
+        permits.computeIfPresent(building.getBuildingId(),
+                (id, entry) -> --entry.requests == 0 ? null : entry);
+    }
+
+    /**
+     * Request a service asynchronously.
+     * The future completes with the service's output and cost, or
+     * exceptionally with InvalidBuildingStatusException / ServiceUnavailableException.
+     */
+    public CompletableFuture<ServiceResult> submit(AbstractBuilding building, String serviceName) {
+        // Fail fast on requests that can never succeed
+        try {
+            BuildingManager.validateServiceRequest(building, serviceName);
+        } catch (ServiceUnavailableException | InvalidBuildingStatusException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+
+        Semaphore semaphore = claimPermits(building).semaphore;
+        try {
+            return CompletableFuture.supplyAsync(() -> {
+                try {
+                    return serve(building, serviceName, semaphore);
+                } finally {
+                    unclaimPermits(building);
+                }
+            }, executor);
+        } catch (RuntimeException e) {
+            unclaimPermits(building); // rejected - the executor is closed
+            throw e;
+        }
+    }
+
+    /**
+     * Request a service and wait for it (the custom exceptions are rethrown as they are)
+     */
+    public ServiceResult request(AbstractBuilding building, String serviceName)
+            throws ServiceUnavailableException, InvalidBuildingStatusException, InterruptedException {
+        try {
+            return submit(building, serviceName).get();
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ServiceUnavailableException) {
+                throw (ServiceUnavailableException) cause;
+            }
+            if (cause instanceof InvalidBuildingStatusException) {
+                throw (InvalidBuildingStatusException) cause;
+            }
+            if (cause instanceof InterruptedException) {
+                throw (InterruptedException) cause;
+            }
+            throw new IllegalStateException("Service request failed", cause);
+        }
+    }
+
+    // Runs on a virtual thread
+    private ServiceResult serve(AbstractBuilding building, String serviceName, Semaphore semaphore) {
+        try {
+            if (!semaphore.tryAcquire(timeout, timeoutUnit)) {
+                throw new CompletionException(new ServiceUnavailableException(
+                        "Timed out waiting - building is serving " +
+                                Serviceable.MAX_SERVICE_REQUESTS + " requests already",
+                        serviceName,
+                        building.getName()
+                ));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CompletionException(e);
+        }
+
+        try {
+            // The status may have changed while the request was queued
+            Serviceable serviceable = BuildingManager.validateServiceRequest(building, serviceName);
+            String output;
+            OutputCapture.install(); // counted: System.out is restored after the last running request
+            try {
+                OutputCapture.begin();
+                try {
+                    serviceable.provideService(serviceName);
+                } finally {
+                    output = OutputCapture.end();
+                }
+            } finally {
+                OutputCapture.uninstall();
+            }
+            return new ServiceResult(building, serviceName, output, serviceable.calculateServiceCost());
+        } catch (ServiceUnavailableException | InvalidBuildingStatusException e) {
+            throw new CompletionException(e);
+        } finally {
+            semaphore.release();
+        }
+    }
+
+    /**
+     * Requests currently being served by a building
+     */
+    public int getActiveRequests(AbstractBuilding building) {
+        BuildingPermits entry = permits.get(building.getBuildingId());
+        return entry == null ? 0 : Serviceable.MAX_SERVICE_REQUESTS - entry.semaphore.availablePermits();
+    }
+
+    /**
+     * Requests waiting for a permit at a building
+     */
+    public int getQueuedRequests(AbstractBuilding building) {
+        BuildingPermits entry = permits.get(building.getBuildingId());
+        return entry == null ? 0 : entry.semaphore.getQueueLength();
+    }
+
+    /**
+     * Buildings with requests in progress or waiting (entries are removed
+     * when a building's last request is done)
+     */
+    public int getTrackedBuildings() {
+        return permits.size();
+    }
+
+    /**
+     * Stop accepting requests and wait for the submitted ones to finish
+     */
+    @Override
+    public void close() {
+        if (closed.getAndSet(true)) {
+            return;
+        }
+        executor.close();
+    }
+}
@@ -0,0 +1,28 @@
+package smartcity;
+
+/**
+ * MODULE 5: ServiceResult - Outcome of one service request
+ *
+ * Produced by ServiceRequestExecutor: holds the text provideService()
+ * printed (captured on the request's own thread) and the service cost,
+ * so the caller decides whether and when to print it.
+ */
+public class ServiceResult {
+
+    private final AbstractBuilding building;
+    private final String serviceName;
+    private final String output;
+    private final double cost;
+
+    ServiceResult(AbstractBuilding building, String serviceName, String output, double cost) {
+        this.building = building;
+        this.serviceName = serviceName;
+        this.output = output;
+        this.cost = cost;
+    }
+
+    public AbstractBuilding getBuilding() { return building; }
+    public String getServiceName() { return serviceName; }
+    public String getOutput() { return output; }
+    public double getCost() { return cost; }
+}
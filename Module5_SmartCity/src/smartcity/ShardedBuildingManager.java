@@ -0,0 +1,292 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * MODULE 5: ShardedBuildingManager - City partitioned into district shards
+ *
+ * This demonstrates:
+ * - SHARDING (lock striping): every district is its own
+ *   ConcurrentBuildingManager with its own lock and indexes, so writes to
+ *   different districts never wait for each other
+ * - A CONCURRENTHASHMAP directory (building ID -> district) for O(1)
+ *   routing of lookups and removals
+ * - FAN-OUT / MERGE: city-wide queries run on all shards in parallel and
+ *   the partial results are combined; aggregates add up the districts'
+ *   running counters
+ *
+ * Buildings are placed in the district given to addBuilding(), or in a
+ * district derived from the building ID when no district is given.
+ *
+ * This is an OPT-IN manager for many concurrent writers. SmartCityApp keeps
+ * a single ConcurrentBuildingManager: snapshots, the mutation log,
+ * checkpoints, CSV import and export all work on one BuildingManager,
+ * which this facade does not extend.
+ */
+public class ShardedBuildingManager {
+
+    public static final int DEFAULT_DISTRICTS = 8;
+
+    private final ConcurrentBuildingManager[] shards;
+
+    // DIRECTORY: building ID -> district holding it
+    private final ConcurrentHashMap<String, Integer> directory = new ConcurrentHashMap<>();
+
+    public ShardedBuildingManager() {
+        this(DEFAULT_DISTRICTS, BuildingManager.DEFAULT_MAX_BUILDINGS);
+    }
+
+    public ShardedBuildingManager(int districts, int maxBuildingsPerDistrict) {
+        if (districts <= 0) {
+            throw new IllegalArgumentException("Number of districts must be positive");
+        }
+        shards = new ConcurrentBuildingManager[districts];
+        for (int i = 0; i < districts; i++) {
+            shards[i] = new ConcurrentBuildingManager(maxBuildingsPerDistrict);
+        }
+    }
+
+    public int getDistrictCount() {
+        return shards.length;
+    }
+
+    /**
+     * Manager of a single district (for district-local queries)
+     */
+    public ConcurrentBuildingManager getDistrict(int district) {
+        checkDistrict(district);
+        return shards[district];
+    }
+
+    /**
+     * Default district of a building: spread IDs evenly over the shards
+     */
+    public int districtFor(AbstractBuilding building) {
+        return Math.floorMod(building.getBuildingId().hashCode(), shards.length);
+    }
+
+    private void checkDistrict(int district) {
+        if (district < 0 || district >= shards.length) {
+            throw new IllegalArgumentException(
+                    "District " + district + " does not exist (0 - " + (shards.length - 1) + ")");
+        }
+    }
+
+    // WRITES - only the owning shard is locked
+
+    public void addBuilding(AbstractBuilding building) throws CityCapacityException {
+        addBuilding(building, districtFor(building));
+    }
+
+    public void addBuilding(AbstractBuilding building, int district) throws CityCapacityException {
+        checkDistrict(district);
+
+        // Claim the ID first, so two districts can never hold the same building
+        if (directory.putIfAbsent(building.getBuildingId(), district) != null) {
+            System.err.println("Building " + building.getBuildingId() + " is already registered!");
+            return;
+        }
+
+        boolean added = false;
+        try {
+            shards[district].addBuilding(building);
+            // Some failures (e.g. a duplicate ID) are reported without an exception
+            added = building.getChangeListener() == shards[district];
+        } finally {
+            if (!added) {
+                directory.remove(building.getBuildingId(), district);
+            }
+        }
+    }
+
+    public void removeBuilding(AbstractBuilding building) throws BuildingNotFoundException {
+        Integer district = directory.get(building.getBuildingId());
+        if (district == null) {
+            throw new BuildingNotFoundException(
+                    "Building not found in the city",
+                    building.getName()
+            );
+        }
+
+        shards[district].removeBuilding(building);
+        directory.remove(building.getBuildingId(), district);
+    }
+
+    public void clearAllBuildings() {
+        Arrays.stream(shards).parallel().forEach(BuildingManager::clearAllBuildings);
+        directory.clear();
+    }
+
+    // ROUTED LOOKUPS - one shard
+
+    public AbstractBuilding findBuildingById(String buildingId) throws BuildingNotFoundException {
+        Integer district = directory.get(buildingId);
+        if (district == null) {
+            throw new BuildingNotFoundException(
+                    "Building with ID '" + buildingId + "' not found",
+                    buildingId
+            );
+        }
+        return shards[district].findBuildingById(buildingId);
+    }
+
+    /**
+     * District holding a building, or -1 if it is not registered
+     */
+    public int getDistrictOf(AbstractBuilding building) {
+        Integer district = directory.get(building.getBuildingId());
+        return district == null ? -1 : district;
+    }
+
+    /**
+     * ENTER event, routed to the district holding the building
+     */
+    public void admit(AbstractBuilding building, int people)
+            throws BuildingCapacityException, InvalidBuildingStatusException, BuildingNotFoundException {
+        Integer district = directory.get(building.getBuildingId());
+        if (district == null) {
+            throw new BuildingNotFoundException(
+                    "Building is not managed by this city",
+                    building.getName()
+            );
+        }
+        shards[district].admit(building, people);
+    }
+
+    /**
+     * EXIT event, routed to the district holding the building
+     */
+    public int release(AbstractBuilding building, int people) {
+        Integer district = directory.get(building.getBuildingId());
+        return district == null ? 0 : shards[district].release(building, people);
+    }
+
+    // FAN-OUT QUERIES - all shards in parallel, results concatenated
+
+    private ArrayList<AbstractBuilding> fanOut(
+            Function<ConcurrentBuildingManager, Collection<AbstractBuilding>> query) {
+        List<Collection<AbstractBuilding>> parts = Arrays.stream(shards).parallel()
+                .map(query)
+                .collect(Collectors.toList());
+
+        ArrayList<AbstractBuilding> result = new ArrayList<>();
+        for (Collection<AbstractBuilding> part : parts) {
+            result.addAll(part);
+        }
+        return result;
+    }
+
+    public ArrayList<AbstractBuilding> findBuildingsByType(BuildingType type)
+            throws BuildingNotFoundException {
+        ArrayList<AbstractBuilding> result = fanOut(shard -> shard.viewBuildingsByType(type));
+        if (result.isEmpty()) {
+            throw new BuildingNotFoundException(
+                    "No buildings of type " + type.getName() + " found"
+            );
+        }
+        return result;
+    }
+
+    public ArrayList<AbstractBuilding> findBuildingsByStatus(BuildingStatus status)
+            throws BuildingNotFoundException {
+        ArrayList<AbstractBuilding> result = fanOut(shard -> shard.viewBuildingsByStatus(status));
+        if (result.isEmpty()) {
+            throw new BuildingNotFoundException(
+                    "No buildings with status " + status.getDisplayName() + " found"
+            );
+        }
+        return result;
+    }
+
+    public ArrayList<AbstractBuilding> findBuildingsWith(BuildingCapability... required) {
+        return fanOut(shard -> shard.findBuildingsWith(required));
+    }
+
+    /**
+     * Buildings whose name starts with a prefix, in the same order as
+     * BuildingManager.findBuildingsByNamePrefix (shortest name first, then alphabetical)
+     */
+    public ArrayList<AbstractBuilding> findBuildingsByNamePrefix(String prefix, int limit) {
+        ArrayList<AbstractBuilding> result = fanOut(shard -> shard.findBuildingsByNamePrefix(prefix, limit));
+        // Every shard returns its best 'limit' matches - keep the best overall
+        result.sort(BuildingNameIndex.PREFIX_ORDER);
+        return limit < result.size() ? new ArrayList<>(result.subList(0, limit)) : result;
+    }
+
+    // FAN-OUT AGGREGATES - every shard computes its part in parallel,
+    // the parts are merged (a busy shard only delays its own part)
+
+    public int getBuildingCount() {
+        return Arrays.stream(shards).parallel()
+                .mapToInt(ConcurrentBuildingManager::getBuildingCount)
+                .sum();
+    }
+
+    public boolean isEmpty() {
+        return directory.isEmpty();
+    }
+
+    public int countBuildingsByType(BuildingType type) {
+        return Arrays.stream(shards).parallel()
+                .mapToInt(shard -> shard.countBuildingsByType(type))
+                .sum();
+    }
+
+    public int countBuildingsByStatus(BuildingStatus status) {
+        return Arrays.stream(shards).parallel()
+                .mapToInt(shard -> shard.countBuildingsByStatus(status))
+                .sum();
+    }
+
+    public long getTotalOccupancy() {
+        return Arrays.stream(shards).parallel()
+                .mapToLong(ConcurrentBuildingManager::getTotalOccupancy)
+                .sum();
+    }
+
+    /**
+     * Sum of the districts' running totals (an empty district simply adds 0)
+     */
+    public double calculateTotalMaintenance() {
+        return getStatistics().getTotalMaintenanceCost();
+    }
+
+    /**
+     * City-wide statistics: per-district snapshots taken in parallel and
+     * merged into one
+     */
+    public CityStatistics getStatistics() {
+        return Arrays.stream(shards).parallel()
+                .map(ConcurrentBuildingManager::getStatistics)
+                .reduce(new CityStatistics(), ShardedBuildingManager::merged, ShardedBuildingManager::merged);
+    }
+
+    // Merge into a fresh copy (reduce() may combine partial results in any order)
+    private static CityStatistics merged(CityStatistics left, CityStatistics right) {
+        CityStatistics result = new CityStatistics();
+        result.merge(left);
+        result.merge(right);
+        return result;
+    }
+
+    public void displayStatistics() {
+        getStatistics().display();
+    }
+
+    /**
+     * Buildings per district (shows how evenly the city is spread)
+     */
+    public void displayDistrictSummary() {
+        System.out.println("\n=== District Summary ===");
+        for (int i = 0; i < shards.length; i++) {
+            System.out.println("District " + i + ": " + shards[i].getBuildingCount() + " buildings");
+        }
+        System.out.println("Total: " + getBuildingCount());
+    }
+}
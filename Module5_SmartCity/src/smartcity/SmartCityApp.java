@@ -1,7 +1,13 @@
 package smartcity;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Scanner;
 import java.util.InputMismatchException;
 
@@ -20,12 +26,52 @@ import java.util.InputMismatchException;
  */
 public class SmartCityApp {
 
-    // Use BuildingManager which uses ArrayList
-    private static BuildingManager buildingManager = new BuildingManager();
+    // Thread-safe manager: the checkpoint thread reads it in the background
+    private static BuildingManager buildingManager = new ConcurrentBuildingManager();
     private static Scanner scanner = new Scanner(System.in);
 
+    // Service requests run on virtual threads, limited per building by a semaphore
+    private static final ServiceRequestExecutor serviceExecutor = new ServiceRequestExecutor();
+
+    // Binary snapshot: loaded at startup, rewritten by every checkpoint
+    private static final Path SNAPSHOT_FILE = Paths.get("smartcity.snapshot");
+
+    // Where saves go while the snapshot cannot be trusted to hold the whole city
+    private static final Path RECOVERY_FILE = Paths.get("smartcity-recovered.snapshot");
+
+    // Write-ahead log (opt-in, --wal): its tail is replayed after the snapshot,
+    // so nothing done since is lost
+    private static final Path LOG_DIRECTORY = Paths.get("smartcity-wal");
+    private static MutationLog mutationLog;
+
+    // Set when the snapshot or the log could not be read at startup: the city
+    // in memory may be empty or incomplete, so it must never replace them
+    private static boolean degraded;
+
+    // Background checkpoints keep the log tail (and so the restart time) short
+    private static final long CHECKPOINT_CHECK_MILLIS = 1000;
+    private static CheckpointManager checkpointManager;
+
+    /**
+     * Usage: java smartcity.SmartCityApp [maxBuildings] [--wal]
+     * (the limit can also be changed from the menu, option 24;
+     * --wal logs every change to ./smartcity-wal and checkpoints in the background)
+     */
     public static void main(String[] args) {
         boolean running = true;
+        boolean useLog = false;
+
+        for (String arg : args) {
+            if (arg.equals("--wal")) {
+                useLog = true;
+                continue;
+            }
+            try {
+                setCityLimit(Integer.parseInt(arg.trim()));
+            } catch (NumberFormatException e) {
+                System.err.println("Ignoring invalid argument: " + arg);
+            }
+        }
 
         System.out.println("╔═══════════════════════════════════════════╗");
         System.out.println("║   SMART CITY MANAGEMENT SYSTEM - v5.0    ║");
@@ -33,6 +79,20 @@ public class SmartCityApp {
         System.out.println("╚═══════════════════════════════════════════╝");
         System.out.println("\nCity: " + AbstractBuilding.getCityName());
 
+        long snapshotLsn = 0;
+        if (Files.exists(SNAPSHOT_FILE)) {
+            snapshotLsn = loadCity();
+            if (snapshotLsn < 0) {
+                enterDegradedMode("the snapshot " + SNAPSHOT_FILE + " could not be loaded");
+            }
+        }
+        if (useLog) {
+            openMutationLog(Math.max(snapshotLsn, 0));
+        } else if (Files.isDirectory(LOG_DIRECTORY)) {
+            // Changes logged by an earlier --wal run are not in the snapshot
+            enterDegradedMode(LOG_DIRECTORY + " exists but --wal was not given");
+        }
+
         while (running) {
             try {
                 displayMainMenu();
@@ -97,8 +157,24 @@ public class SmartCityApp {
                             break;
                         case 19:
                             running = false;
+                            saveCity();
                             displayExitMessage();
                             break;
+                        case 20:
+                            saveCity();
+                            break;
+                        case 21:
+                            loadCity();
+                            break;
+                        case 22:
+                            importCsv();
+                            break;
+                        case 23:
+                            exportCity();
+                            break;
+                        case 24:
+                            changeCityLimit();
+                            break;
                         default:
                             System.out.println("\n⚠ Invalid choice! Please try again.");
                     }
@@ -146,6 +222,8 @@ public class SmartCityApp {
         }
 
         // FINALLY equivalent - cleanup
+        serviceExecutor.close();
+        closeMutationLog();
         scanner.close();
     }
 
@@ -386,6 +464,16 @@ public class SmartCityApp {
             building.displayBasicInfo();
 
         } catch (BuildingNotFoundException e) {
+            // Offer close matches (prefix / typos) before giving up
+            ArrayList<AbstractBuilding> suggestions = buildingManager.searchBuildingsByName(name, 5);
+            if (!suggestions.isEmpty()) {
+                System.out.println("\nNo exact match. Did you mean:");
+                for (AbstractBuilding building : suggestions) {
+                    System.out.println("- " + building.getName() + " [" + building.getBuildingId() + "]");
+                }
+                return;
+            }
+
             // Re-throw with additional context
             throw new BuildingNotFoundException(
                     "Search failed: " + e.getMessage(),
@@ -467,6 +555,10 @@ public class SmartCityApp {
         } catch (InputMismatchException e) {
             scanner.nextLine();
             System.err.println("\n❌ Invalid input!");
+        } catch (InvalidBuildingStatusException e) {
+            // Transition not allowed by the transition matrix
+            System.err.println("\n❌ INVALID STATUS ERROR:");
+            System.err.println(e.getDetailedMessage());
         }
     }
 
@@ -618,12 +710,17 @@ public class SmartCityApp {
 
             if (choice > 0 && choice <= services.length) {
                 String selectedService = services[choice - 1];
-                buildingManager.requestService(building, selectedService);
+                ServiceResult result = serviceExecutor.request(building, selectedService);
+                System.out.print(result.getOutput());
+                System.out.println("Service cost: $" + String.format("%.2f", result.getCost()));
             }
 
         } catch (InputMismatchException e) {
             scanner.nextLine();
             System.err.println("\n❌ Invalid input!");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("\n❌ Service request interrupted");
         }
     }
 
@@ -640,7 +737,8 @@ public class SmartCityApp {
         System.out.println("\n=== Buildings (Iterator Mode) ===");
 
         try {
-            ArrayList<AbstractBuilding> buildings = buildingManager.getAllBuildings();
+            // MVCC snapshot: consistent view without copying the building list
+            BuildingSnapshot buildings = buildingManager.snapshot();
 
             // ITERATOR usage
             Iterator<AbstractBuilding> iterator = buildings.iterator();
@@ -654,7 +752,7 @@ public class SmartCityApp {
                 count++;
             }
 
-            System.out.println("\nTotal: " + buildings.size()); // ArrayList SIZE
+            System.out.println("\nTotal: " + buildings.size());
 
         } catch (Exception e) {
             System.err.println("\n❌ Error displaying buildings: " + e.getMessage());
@@ -679,6 +777,18 @@ public class SmartCityApp {
             System.out.println("Total Cost: $" + String.format("%.2f", total));
             System.out.println("Average per Building: $" + String.format("%.2f", total / count));
 
+            // Per-type breakdown - loops over the columnar store
+            EnumMap<BuildingType, Double> costByType = buildingManager.calculateMaintenanceByType();
+            EnumMap<BuildingType, Double> areaByType = buildingManager.calculateAreaByType();
+            System.out.println("\nBy Type:");
+            for (BuildingType type : BuildingType.values()) {
+                double area = areaByType.get(type);
+                if (buildingManager.countBuildingsByType(type) > 0 && area > 0) {
+                    System.out.println("  " + type.getName() + ": $" + String.format("%.2f", costByType.get(type)) +
+                            " ($" + String.format("%.2f", costByType.get(type) / area) + " per sq meter)");
+                }
+            }
+
         } catch (Exception e) {
             System.err.println("\n❌ Error calculating costs: " + e.getMessage());
         }
@@ -689,23 +799,30 @@ public class SmartCityApp {
      */
     private static void displayStatistics() {
         buildingManager.displayStatistics();
+        CityManager.displayPriorityStatistics(buildingManager);
+        if (checkpointManager != null) {
+            checkpointManager.displayStatistics();
+        }
     }
 
     /**
-     * Bulk operations demonstrating ArrayList operations
+     * Bulk operations over a read-only snapshot of the city
      */
     private static void performBulkOperations() {
         System.out.println("\n=== Bulk Operations ===");
         System.out.println("1. List all building IDs");
         System.out.println("2. Count buildings by type");
         System.out.println("3. List operational buildings");
+        System.out.println("4. Run special operations (parallel)");
+        System.out.println("5. List serviceable buildings");
+        System.out.println("6. Accessibility compliance report");
         System.out.print("\nChoice: ");
 
         try {
             int choice = scanner.nextInt();
             scanner.nextLine();
 
-            ArrayList<AbstractBuilding> buildings = buildingManager.getAllBuildings();
+            BuildingSnapshot buildings = buildingManager.snapshot(); // no O(n) copy
 
             switch (choice) {
                 case 1:
@@ -718,15 +835,12 @@ public class SmartCityApp {
 
                 case 2:
                     System.out.println("\n=== Count by Type ===");
+                    EnumMap<BuildingType, Long> capacityByType = buildingManager.calculateCapacityByType();
                     for (BuildingType type : BuildingType.values()) {
-                        int count = 0;
-                        for (AbstractBuilding building : buildings) {
-                            if (building.getBuildingType() == type) {
-                                count++;
-                            }
-                        }
+                        int count = buildingManager.countBuildingsByType(type); // O(1) index read
                         if (count > 0) {
-                            System.out.println(type.getName() + ": " + count);
+                            System.out.println(type.getName() + ": " + count +
+                                    " (capacity " + capacityByType.get(type) + ")");
                         }
                     }
                     break;
@@ -742,6 +856,33 @@ public class SmartCityApp {
                     }
                     System.out.println("\nTotal Operational: " + operationalCount);
                     break;
+
+                case 4:
+                    // FORK/JOIN over the same snapshot, output printed in city order
+                    ArrayList<AbstractBuilding> all = buildings.toList();
+                    int failed = 0;
+                    for (SpecialOperationResult result : CityManager.performAllSpecialOperationsParallel(
+                            all.toArray(new AbstractBuilding[0]), all.size())) {
+                        if (!result.isSuccessful()) {
+                            failed++;
+                        }
+                    }
+                    if (failed > 0) {
+                        System.err.println("\n❌ " + failed + " operation(s) failed");
+                    }
+                    break;
+
+                case 5:
+                    // Capability BITSET: only serviceable buildings are visited
+                    CityManager.displayServiceableBuildings(buildingManager);
+                    break;
+
+                case 6:
+                    CityManager.checkAccessibilityCompliance(buildingManager);
+                    break;
+
+                default:
+                    System.out.println("\n⚠ Invalid choice!");
             }
 
         } catch (InputMismatchException e) {
@@ -752,10 +893,182 @@ public class SmartCityApp {
         }
     }
 
+    /**
+     * Write the city to the snapshot file
+     * (to RECOVERY_FILE instead while the city may be incomplete)
+     */
+    private static void saveCity() {
+        try {
+            long start = System.nanoTime();
+            if (degraded) {
+                long count = CitySnapshotFile.save(buildingManager, RECOVERY_FILE);
+                System.out.println("\n⚠ " + SNAPSHOT_FILE + " was left untouched; saved " + count +
+                        " buildings to " + RECOVERY_FILE + " instead");
+                return;
+            }
+            if (checkpointManager != null) {
+                // Snapshot plus log compaction: the next start replays nothing
+                long lsn = checkpointManager.checkpoint();
+                System.out.println("\n✓ Checkpoint of " + buildingManager.getBuildingCount() + " buildings written to " +
+                        SNAPSHOT_FILE + " (log position " + lsn + ", " +
+                        (System.nanoTime() - start) / 1_000_000 + " ms)");
+                return;
+            }
+            long count = CitySnapshotFile.save(buildingManager, SNAPSHOT_FILE);
+            System.out.println("\n✓ Saved " + count + " buildings to " + SNAPSHOT_FILE +
+                    " (" + (System.nanoTime() - start) / 1_000_000 + " ms)");
+        } catch (IOException e) {
+            System.err.println("\n❌ Could not save the city: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replace the current city with the contents of the snapshot file
+     * (the current city is only cleared once the whole file has been read)
+     *
+     * @return last mutation log LSN contained in the snapshot (-1 if it was not loaded)
+     */
+    private static long loadCity() {
+        try {
+            long start = System.nanoTime();
+            long lsn = CitySnapshotFile.readLastLsn(SNAPSHOT_FILE);
+            List<AbstractBuilding> buildings = CitySnapshotFile.read(SNAPSHOT_FILE);
+            buildingManager.clearAllBuildings();
+            IngestReport report = CitySnapshotFile.restore(buildings, buildingManager, start);
+            System.out.println("\nLoaded city from " + SNAPSHOT_FILE + ":");
+            report.display();
+            return lsn;
+        } catch (InvalidSnapshotException e) {
+            System.err.println("\n❌ SNAPSHOT ERROR:");
+            System.err.println(e.getDetailedMessage());
+        } catch (IOException e) {
+            System.err.println("\n❌ Could not load the city: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    /**
+     * Bulk import from a CSV file (header: type,name,floors,area,capacity,...)
+     */
+    private static void importCsv() {
+        System.out.print("\nCSV file: ");
+        String file = scanner.nextLine().trim();
+        try {
+            new BuildingCsvImporter(buildingManager).importFile(Paths.get(file));
+        } catch (InvalidBuildingDataException e) {
+            System.err.println("\n❌ INVALID CSV:");
+            System.err.println(e.getDetailedMessage());
+        } catch (IOException e) {
+            System.err.println("\n❌ Could not read " + file + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            System.err.println("\n❌ Import interrupted");
+        }
+    }
+
+    /**
+     * Maximum number of buildings (also limits CSV imports;
+     * loading a snapshot always restores every building)
+     */
+    private static void changeCityLimit() {
+        System.out.println("\nCurrent limit: " + buildingManager.getMaxBuildings() +
+                " buildings (" + buildingManager.getBuildingCount() + " in the city)");
+        System.out.print("New limit: ");
+        setCityLimit(getUserChoice());
+    }
+
+    private static void setCityLimit(int maxBuildings) {
+        if (maxBuildings <= 0) {
+            System.err.println("\n❌ The building limit must be positive");
+            return;
+        }
+        buildingManager.setMaxBuildings(maxBuildings);
+        System.out.println("\n✓ The city now allows up to " + maxBuildings + " buildings");
+        if (buildingManager.getBuildingCount() > maxBuildings) {
+            System.out.println("  (existing buildings are kept, new ones are rejected until some are removed)");
+        }
+    }
+
+    /**
+     * Stream every building to a .csv file, or to NDJSON for any other name
+     */
+    private static void exportCity() {
+        System.out.print("\nExport file (.csv or .ndjson): ");
+        String file = scanner.nextLine().trim();
+        BuildingExporter.Format format = file.toLowerCase().endsWith(".csv")
+                ? BuildingExporter.Format.CSV : BuildingExporter.Format.NDJSON;
+        try {
+            long start = System.nanoTime();
+            BuildingExporter exporter = new BuildingExporter(buildingManager, format);
+            long count = exporter.exportFile(Paths.get(file));
+            System.out.println("\n✓ Exported " + count + " buildings as " + format + " to " + file +
+                    " (" + exporter.getBytesWritten() / 1024 + " KB, " +
+                    (System.nanoTime() - start) / 1_000_000 + " ms)");
+        } catch (IOException e) {
+            System.err.println("\n❌ Could not export the city: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Replay the log records written after the snapshot, log every change
+     * from now on and start background checkpointing
+     */
+    private static void openMutationLog(long snapshotLsn) {
+        try {
+            mutationLog = new MutationLog(LOG_DIRECTORY, MutationLog.FsyncPolicy.GROUP_COMMIT);
+            long replayed = mutationLog.recover(buildingManager, snapshotLsn);
+            if (replayed > 0) {
+                System.out.println("Recovered " + replayed + " logged changes - " +
+                        buildingManager.getBuildingCount() + " buildings");
+            }
+            if (degraded) {
+                return; // never checkpoint an incomplete city over the snapshot
+            }
+            checkpointManager = new CheckpointManager(buildingManager, mutationLog, SNAPSHOT_FILE);
+            checkpointManager.start(CHECKPOINT_CHECK_MILLIS);
+        } catch (CorruptLogException e) {
+            mutationLog = null;
+            System.err.println("\n❌ MUTATION LOG ERROR (changes will not be logged):");
+            System.err.println(e.getDetailedMessage());
+            enterDegradedMode("the mutation log could not be replayed");
+        } catch (IOException e) {
+            mutationLog = null;
+            System.err.println("\n❌ Could not open the mutation log: " + e.getMessage());
+            enterDegradedMode("the mutation log could not be read");
+        }
+    }
+
+    /**
+     * Keep the snapshot (and the log) as they are for the rest of the
+     * session: saves go to RECOVERY_FILE and no checkpoint is taken
+     */
+    private static void enterDegradedMode(String reason) {
+        System.err.println("\n⚠ " + reason + " - the city may be incomplete.");
+        if (!degraded) {
+            System.err.println("  " + SNAPSHOT_FILE + " will not be overwritten; saves go to " + RECOVERY_FILE);
+        }
+        degraded = true;
+    }
+
+    private static void closeMutationLog() {
+        if (checkpointManager != null) {
+            checkpointManager.close();
+        }
+        if (mutationLog == null) {
+            return;
+        }
+        try {
+            mutationLog.close();
+        } catch (IOException e) {
+            System.err.println("\n❌ Could not close the mutation log: " + e.getMessage());
+        }
+    }
+
     private static void displayMainMenu() {
         System.out.println("\n" + "=".repeat(60));
         System.out.println("SMART CITY MANAGEMENT - MODULE 5");
-        System.out.println("Buildings in city: " + buildingManager.getBuildingCount());
+        System.out.println("Buildings in city: " + buildingManager.getBuildingCount() +
+                " / " + buildingManager.getMaxBuildings());
         System.out.println("=".repeat(60));
         System.out.println("Building Management:");
         System.out.println("  1. Add Hospital        2. Add School");
@@ -770,7 +1083,11 @@ public class SmartCityApp {
         System.out.println("  15. Display (Iterator) 16. Maintenance Costs");
         System.out.println("\nReports:");
         System.out.println("  17. Statistics         18. Bulk Operations");
-        System.out.println("\n  19. Exit");
+        System.out.println("\nPersistence:");
+        System.out.println("  20. Save City          21. Load City");
+        System.out.println("  22. Import CSV         23. Export City");
+        System.out.println("  24. City Limit");
+        System.out.println("\n  19. Exit (saves the city)");
         System.out.println("=".repeat(60));
         System.out.print("Choice: ");
     }
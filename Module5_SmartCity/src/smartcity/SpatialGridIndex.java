@@ -0,0 +1,266 @@
+package smartcity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.PriorityQueue;
+import java.util.function.Predicate;
+
+/**
+ * MODULE 5: SpatialGridIndex - Uniform grid over building locations
+ *
+ * The city plane is cut into square cells (cellSize meters wide).
+ * Each non-empty cell is stored in a HASHMAP, so:
+ * - RADIUS queries only visit the cells overlapping the circle
+ * - K-NEAREST queries visit rings of cells around the query point and
+ *   stop as soon as no unvisited cell can hold a closer building; only the
+ *   part of each ring inside the occupied area is visited, and once that
+ *   would take more lookups than there are non-empty cells (sparse grid,
+ *   far-away query point) the non-empty cells are scanned directly
+ */
+class SpatialGridIndex {
+
+    static final double DEFAULT_CELL_SIZE = 500.0; // meters
+
+    // Cell coordinates are clamped to +-MAX_CELL: far-away locations share
+    // the outermost cells instead of overflowing the int cast, and
+    // 'cell +- ring' arithmetic stays well inside the long range
+    private static final int MAX_CELL = 1 << 30;
+
+    private final double cellSize;
+    private final HashMap<Long, ArrayList<AbstractBuilding>> cells = new HashMap<>();
+    private int size;
+
+    // Bounding box of all cells ever used (limits how far searches expand)
+    private int minCellX = Integer.MAX_VALUE;
+    private int maxCellX = Integer.MIN_VALUE;
+    private int minCellY = Integer.MAX_VALUE;
+    private int maxCellY = Integer.MIN_VALUE;
+
+    /**
+     * Search candidate with its distance to the query point
+     */
+    private static final class Candidate {
+        final AbstractBuilding building;
+        final double distance;
+
+        Candidate(AbstractBuilding building, double distance) {
+            this.building = building;
+            this.distance = distance;
+        }
+    }
+
+    private static final Comparator<Candidate> BY_DISTANCE =
+            Comparator.comparingDouble(c -> c.distance);
+
+    public SpatialGridIndex() {
+        this(DEFAULT_CELL_SIZE);
+    }
+
+    public SpatialGridIndex(double cellSize) {
+        if (cellSize <= 0) {
+            throw new IllegalArgumentException("Cell size must be greater than 0");
+        }
+        this.cellSize = cellSize;
+    }
+
+    private int cellOf(double coordinate) {
+        double cell = Math.floor(coordinate / cellSize);
+        return (int) Math.max(-MAX_CELL, Math.min(MAX_CELL, cell));
+    }
+
+    private static long key(int cellX, int cellY) {
+        return ((long) cellX << 32) | (cellY & 0xffffffffL);
+    }
+
+    public void add(AbstractBuilding building, double x, double y) {
+        int cellX = cellOf(x);
+        int cellY = cellOf(y);
+        cells.computeIfAbsent(key(cellX, cellY), k -> new ArrayList<>()).add(building);
+        size++;
+
+        minCellX = Math.min(minCellX, cellX);
+        maxCellX = Math.max(maxCellX, cellX);
+        minCellY = Math.min(minCellY, cellY);
+        maxCellY = Math.max(maxCellY, cellY);
+    }
+
+    /**
+     * Remove building that was indexed at the given location
+     */
+    public void remove(AbstractBuilding building, double x, double y) {
+        long key = key(cellOf(x), cellOf(y));
+        ArrayList<AbstractBuilding> cell = cells.get(key);
+        if (cell != null && cell.remove(building)) {
+            size--;
+            if (cell.isEmpty()) {
+                cells.remove(key);
+            }
+        }
+    }
+
+    public void clear() {
+        cells.clear();
+        size = 0;
+        minCellX = Integer.MAX_VALUE;
+        maxCellX = Integer.MIN_VALUE;
+        minCellY = Integer.MAX_VALUE;
+        maxCellY = Integer.MIN_VALUE;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * All matching buildings within 'radius' meters, nearest first
+     */
+    public ArrayList<AbstractBuilding> withinRadius(double x, double y, double radius,
+                                                    Predicate<AbstractBuilding> filter) {
+        ArrayList<Candidate> found = new ArrayList<>();
+        if (size == 0 || radius < 0) {
+            return new ArrayList<>();
+        }
+
+        int fromX = Math.max(cellOf(x - radius), minCellX);
+        int toX = Math.min(cellOf(x + radius), maxCellX);
+        int fromY = Math.max(cellOf(y - radius), minCellY);
+        int toY = Math.min(cellOf(y + radius), maxCellY);
+
+        long cellsInBox = (long) (toX - fromX + 1) * (toY - fromY + 1);
+        if (cellsInBox > cells.size()) {
+            // Huge radius: cheaper to visit the non-empty cells only
+            for (ArrayList<AbstractBuilding> cell : cells.values()) {
+                collect(cell, x, y, radius, filter, found);
+            }
+        } else {
+            for (int cellX = fromX; cellX <= toX; cellX++) {
+                for (int cellY = fromY; cellY <= toY; cellY++) {
+                    ArrayList<AbstractBuilding> cell = cells.get(key(cellX, cellY));
+                    if (cell != null) {
+                        collect(cell, x, y, radius, filter, found);
+                    }
+                }
+            }
+        }
+
+        found.sort(BY_DISTANCE);
+        ArrayList<AbstractBuilding> result = new ArrayList<>(found.size());
+        for (Candidate candidate : found) {
+            result.add(candidate.building);
+        }
+        return result;
+    }
+
+    private static void collect(ArrayList<AbstractBuilding> cell, double x, double y, double radius,
+                                Predicate<AbstractBuilding> filter, ArrayList<Candidate> found) {
+        for (AbstractBuilding building : cell) {
+            double distance = building.distanceTo(x, y);
+            if (distance <= radius && filter.test(building)) {
+                found.add(new Candidate(building, distance));
+            }
+        }
+    }
+
+    /**
+     * The k matching buildings closest to (x, y), nearest first
+     */
+    public ArrayList<AbstractBuilding> nearest(double x, double y, int k,
+                                               Predicate<AbstractBuilding> filter) {
+        ArrayList<AbstractBuilding> result = new ArrayList<>();
+        if (size == 0 || k <= 0) {
+            return result;
+        }
+
+        int centerX = cellOf(x);
+        int centerY = cellOf(y);
+
+        // Rings before this lie entirely outside the occupied area,
+        // rings beyond this cannot contain any building
+        long firstRing = Math.max(0, Math.max(
+                Math.max((long) minCellX - centerX, (long) centerX - maxCellX),
+                Math.max((long) minCellY - centerY, (long) centerY - maxCellY)));
+        long maxRing = Math.max(
+                Math.max(Math.abs((long) centerX - minCellX), Math.abs((long) maxCellX - centerX)),
+                Math.max(Math.abs((long) centerY - minCellY), Math.abs((long) maxCellY - centerY)));
+
+        // Max-heap: the head is the worst of the current k best
+        PriorityQueue<Candidate> best = new PriorityQueue<>(BY_DISTANCE.reversed());
+
+        // Cell lookups left before scanning the non-empty cells is cheaper
+        long budget = cells.size();
+
+        for (long ring = firstRing; ring <= maxRing; ring++) {
+            // Only the part of the ring inside the bounding box
+            long fromX = Math.max(centerX - ring, minCellX);
+            long toX = Math.min(centerX + ring, maxCellX);
+            long fromY = Math.max(centerY - ring, minCellY);
+            long toY = Math.min(centerY + ring, maxCellY);
+            for (long cellX = fromX; cellX <= toX; cellX++) {
+                // Only the border of the ring: whole edge columns, top and bottom cells otherwise
+                boolean edgeColumn = cellX == centerX - ring || cellX == centerX + ring;
+                long step = edgeColumn ? 1 : Math.max(1, 2 * ring);
+                long firstY = edgeColumn ? fromY : centerY - ring;
+                for (long cellY = firstY; cellY <= toY; cellY += step) {
+                    if (cellY < fromY) {
+                        continue; // top cell of the ring is outside the box
+                    }
+                    if (--budget < 0) {
+                        return nearestByScan(x, y, k, filter);
+                    }
+                    ArrayList<AbstractBuilding> cell = cells.get(key((int) cellX, (int) cellY));
+                    if (cell != null) {
+                        offer(cell, x, y, k, filter, best);
+                    }
+                }
+            }
+
+            // Every cell in the next ring is at least ring * cellSize away
+            if (best.size() == k && best.peek().distance <= ring * cellSize) {
+                break;
+            }
+        }
+
+        return ranked(best);
+    }
+
+    /**
+     * k-nearest by visiting every non-empty cell once (sparse grids)
+     */
+    private ArrayList<AbstractBuilding> nearestByScan(double x, double y, int k,
+                                                      Predicate<AbstractBuilding> filter) {
+        PriorityQueue<Candidate> best = new PriorityQueue<>(BY_DISTANCE.reversed());
+        for (ArrayList<AbstractBuilding> cell : cells.values()) {
+            offer(cell, x, y, k, filter, best);
+        }
+        return ranked(best);
+    }
+
+    // Keep the k best candidates in the max-heap
+    private static void offer(ArrayList<AbstractBuilding> cell, double x, double y, int k,
+                              Predicate<AbstractBuilding> filter, PriorityQueue<Candidate> best) {
+        for (AbstractBuilding building : cell) {
+            if (!filter.test(building)) {
+                continue;
+            }
+            double distance = building.distanceTo(x, y);
+            if (best.size() < k) {
+                best.add(new Candidate(building, distance));
+            } else if (distance < best.peek().distance) {
+                best.poll();
+                best.add(new Candidate(building, distance));
+            }
+        }
+    }
+
+    private static ArrayList<AbstractBuilding> ranked(PriorityQueue<Candidate> best) {
+        ArrayList<AbstractBuilding> result = new ArrayList<>(best.size());
+        Candidate[] ranked = best.toArray(new Candidate[0]);
+        Arrays.sort(ranked, BY_DISTANCE);
+        for (Candidate candidate : ranked) {
+            result.add(candidate.building);
+        }
+        return result;
+    }
+}
@@ -0,0 +1,31 @@
+package smartcity;
+
+/**
+ * MODULE 5: SpecialOperationResult - Outcome of one building's special operation
+ *
+ * Produced by CityManager.performAllSpecialOperationsParallel(): holds the
+ * text the operation printed and how long it took.
+ */
+public class SpecialOperationResult {
+
+    private final AbstractBuilding building;
+    private final String output;
+    private final long elapsedNanos;
+    private final boolean successful;
+
+    SpecialOperationResult(AbstractBuilding building, String output, long elapsedNanos, boolean successful) {
+        this.building = building;
+        this.output = output;
+        this.elapsedNanos = elapsedNanos;
+        this.successful = successful;
+    }
+
+    public AbstractBuilding getBuilding() { return building; }
+    public String getOutput() { return output; }
+    public long getElapsedNanos() { return elapsedNanos; }
+    public boolean isSuccessful() { return successful; }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+}
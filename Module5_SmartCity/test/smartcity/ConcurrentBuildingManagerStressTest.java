@@ -0,0 +1,164 @@
+package smartcity;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MODULE 5: ConcurrentBuildingManagerStressTest - Readers racing writers
+ *
+ * Plain main() test (no test framework in this project):
+ *   javac -d out src/smartcity/*.java test/smartcity/*.java
+ *   java -ea -cp out smartcity.ConcurrentBuildingManagerStressTest [seconds]
+ *
+ * Writer threads add, remove, rename and move buildings while reader
+ * threads run every kind of index traversal (ID map, type sets, name trie,
+ * spatial grid, slot store, caller predicates). No reader may fail, and
+ * afterwards the running statistics must match a full recount.
+ */
+public class ConcurrentBuildingManagerStressTest {
+
+    private static final int WRITERS = 2;
+    private static final int READERS = 4;
+    private static final int MAX_BUILDINGS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        long seconds = args.length > 0 ? Long.parseLong(args[0]) : 5;
+        ConcurrentBuildingManager manager = new ConcurrentBuildingManager(MAX_BUILDINGS);
+        Queue<AbstractBuilding> added = new ConcurrentLinkedQueue<>();
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder writes = new LongAdder();
+        LongAdder reads = new LongAdder();
+
+        List<Thread> threads = new ArrayList<>();
+        CountDownLatch ready = new CountDownLatch(WRITERS + READERS);
+        for (int w = 0; w < WRITERS; w++) {
+            int writer = w;
+            threads.add(new Thread(() -> run(ready, running, failures, () -> {
+                write(manager, added, writer);
+                writes.increment();
+            }), "writer-" + w));
+        }
+        for (int r = 0; r < READERS; r++) {
+            threads.add(new Thread(() -> run(ready, running, failures, () -> {
+                read(manager, added);
+                reads.increment();
+            }), "reader-" + r));
+        }
+
+        // addBuilding/removeBuilding print a line each
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+        try {
+            threads.forEach(Thread::start);
+            Thread.sleep(seconds * 1000);
+            running.set(false);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+        } finally {
+            System.setOut(console);
+        }
+
+        for (Throwable failure : failures) {
+            failure.printStackTrace();
+        }
+        check(failures.isEmpty(), failures.size() + " thread(s) failed");
+        List<String> mismatches = manager.verifyStatistics();
+        check(mismatches.isEmpty(), "statistics drifted: " + mismatches);
+        check(manager.getAllBuildings().size() == manager.getBuildingCount(), "slot store and count disagree");
+        System.out.println("ConcurrentBuildingManagerStressTest: " + writes.sum() + " writes, " +
+                reads.sum() + " reads, all checks passed");
+    }
+
+    @FunctionalInterface
+    private interface Step {
+        void run() throws Exception;
+    }
+
+    private static void run(CountDownLatch ready, AtomicBoolean running, Queue<Throwable> failures, Step step) {
+        ready.countDown();
+        try {
+            ready.await();
+            while (running.get()) {
+                step.run();
+            }
+        } catch (Throwable t) {
+            failures.add(t);
+        }
+    }
+
+    private static void write(ConcurrentBuildingManager manager, Queue<AbstractBuilding> added, int writer)
+            throws Exception {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        int action = random.nextInt(10);
+        if (action < 4 && manager.getBuildingCount() < MAX_BUILDINGS - WRITERS) {
+            AbstractBuilding building = random.nextBoolean()
+                    ? new PublicPark("Park " + writer + "-" + random.nextInt(100_000), 100 + random.nextInt(900),
+                            10 + random.nextInt(90), "City")
+                    : new ModernHospital("Hospital " + writer + "-" + random.nextInt(100_000),
+                            1 + random.nextInt(10), 500 + random.nextInt(500), 50 + random.nextInt(200));
+            building.setLocation(random.nextDouble(1000), random.nextDouble(1000));
+            manager.addBuilding(building);
+            added.add(building);
+        } else if (action < 6) {
+            AbstractBuilding building = added.poll();
+            if (building != null) {
+                try {
+                    manager.removeBuilding(building);
+                } catch (BuildingNotFoundException e) {
+                    // Never registered because the city was full
+                }
+            }
+        } else if (action < 8) {
+            AbstractBuilding building = added.peek();
+            if (building != null) {
+                building.setName("Renamed " + writer + "-" + random.nextInt(100_000));
+            }
+        } else {
+            AbstractBuilding building = added.peek();
+            if (building != null) {
+                building.setLocation(random.nextDouble(1000), random.nextDouble(1000));
+            }
+        }
+    }
+
+    private static void read(ConcurrentBuildingManager manager, Queue<AbstractBuilding> added) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        AbstractBuilding sample = added.peek();
+        if (sample != null) {
+            try {
+                check(manager.findBuildingById(sample.getBuildingId()) == sample, "ID lookup returned another building");
+            } catch (BuildingNotFoundException e) {
+                // Removed meanwhile
+            }
+        }
+        manager.findBuildingsByNamePrefix("Park", 20);
+        manager.findBuildingsByNamePrefix("Renamed", 20);
+        manager.findNearestBuildings(random.nextDouble(1000), random.nextDouble(1000), 5,
+                building -> building.getCapacity() > 50);
+        manager.findBuildingsWithinRadius(random.nextDouble(1000), random.nextDouble(1000), 100, null, null);
+        for (AbstractBuilding building : manager.viewBuildingsByType(BuildingType.HOSPITAL)) {
+            check(building.getBuildingType() == BuildingType.HOSPITAL, "type index holds another type");
+        }
+        for (AbstractBuilding building : manager.findBuildingsByCapacityRange(50, 100)) {
+            check(building != null, "range index returned null");
+        }
+        manager.getAllBuildings();
+        manager.getStatistics();
+    }
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+}
@@ -0,0 +1,170 @@
+package smartcity;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * MODULE 5: ConcurrentBuildingManagerThroughputTest - Read scaling
+ *
+ * Plain main() test (no test framework in this project):
+ *   javac -d out src/smartcity/*.java test/smartcity/*.java
+ *   java -cp out smartcity.ConcurrentBuildingManagerThroughputTest [secondsPerRun]
+ *
+ * Runs a 95% read / 5% write mix at 1, 2, 4 ... threads against
+ *   - ConcurrentBuildingManager (StampedLock, optimistic ID lookups)
+ *   - a plain BuildingManager behind one synchronized monitor (baseline)
+ * and prints operations per second and the speed-up over one thread.
+ *
+ * Reads: ID lookup (60%), status count (20%), name lookup (10%),
+ * nearest buildings (10%). Writes: rename or move a random building.
+ *
+ * The numbers depend on the machine: with a single CPU no manager can
+ * scale, so only the comparison with the baseline is meaningful there.
+ * The statistics are verified after every run.
+ */
+public class ConcurrentBuildingManagerThroughputTest {
+
+    private static final int BUILDINGS = 10_000;
+    private static final int WRITE_PERCENT = 5;
+
+    public static void main(String[] args) throws Exception {
+        long millis = (long) ((args.length > 0 ? Double.parseDouble(args[0]) : 1.0) * 1000);
+        int maxThreads = Math.max(4, 2 * Runtime.getRuntime().availableProcessors());
+
+        System.out.println("95/5 read/write mix, " + BUILDINGS + " buildings, " +
+                Runtime.getRuntime().availableProcessors() + " CPU(s), " + millis + " ms per run");
+        System.out.printf("%-8s %18s %8s %18s %8s%n", "threads", "stampedlock ops/s", "scale",
+                "synchronized ops/s", "scale");
+
+        // WARM-UP - let the JIT compile both paths before anything is timed
+        measure(new ConcurrentBuildingManager(BUILDINGS), false, 2, millis);
+        measure(new BuildingManager(BUILDINGS), true, 2, millis);
+
+        double concurrentBase = 0;
+        double synchronizedBase = 0;
+        for (int threads = 1; threads <= maxThreads; threads *= 2) {
+            double concurrent = measure(new ConcurrentBuildingManager(BUILDINGS), false, threads, millis);
+            double coarse = measure(new BuildingManager(BUILDINGS), true, threads, millis);
+            if (threads == 1) {
+                concurrentBase = concurrent;
+                synchronizedBase = coarse;
+            }
+            System.out.printf("%-8d %18.0f %7.2fx %18.0f %7.2fx%n", threads,
+                    concurrent, concurrent / concurrentBase, coarse, coarse / synchronizedBase);
+        }
+    }
+
+    /**
+     * @param coarse wrap every operation in synchronized (manager)
+     * @return operations per second over all threads
+     */
+    private static double measure(BuildingManager manager, boolean coarse, int threads, long millis)
+            throws Exception {
+        AbstractBuilding[] buildings = populate(manager);
+        AtomicBoolean running = new AtomicBoolean(true);
+        LongAdder operations = new LongAdder();
+        List<Throwable> failures = new ArrayList<>();
+        CountDownLatch ready = new CountDownLatch(threads);
+
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            workers.add(new Thread(() -> {
+                ready.countDown();
+                try {
+                    ready.await();
+                    long done = 0;
+                    while (running.get()) {
+                        if (coarse) {
+                            synchronized (manager) {
+                                step(manager, buildings);
+                            }
+                        } else {
+                            step(manager, buildings);
+                        }
+                        done++;
+                    }
+                    operations.add(done);
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }));
+        }
+
+        long start = System.nanoTime();
+        workers.forEach(Thread::start);
+        Thread.sleep(millis);
+        running.set(false);
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        if (!failures.isEmpty()) {
+            throw new AssertionError(failures.size() + " worker(s) failed", failures.get(0));
+        }
+        List<String> mismatches = manager.verifyStatistics();
+        if (!mismatches.isEmpty()) {
+            throw new AssertionError("statistics drifted: " + mismatches);
+        }
+        return operations.sum() / seconds;
+    }
+
+    private static AbstractBuilding[] populate(BuildingManager manager) throws CityCapacityException {
+        AbstractBuilding[] buildings = new AbstractBuilding[BUILDINGS];
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        PrintStream console = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // addBuilding prints a line
+        try {
+            for (int i = 0; i < BUILDINGS; i++) {
+                AbstractBuilding building = i % 2 == 0
+                        ? new PublicPark("Park " + i, 100 + random.nextInt(900), 10 + random.nextInt(90), "City")
+                        : new ModernOffice("Office " + i, 1 + random.nextInt(20), 500 + random.nextInt(500),
+                                50 + random.nextInt(200), "Company " + i, "Services");
+                building.setLocation(random.nextDouble(1000), random.nextDouble(1000));
+                manager.addBuilding(building);
+                buildings[i] = building;
+            }
+        } finally {
+            System.setOut(console);
+        }
+        return buildings;
+    }
+
+    private static void step(BuildingManager manager, AbstractBuilding[] buildings)
+            throws BuildingNotFoundException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        AbstractBuilding building = buildings[random.nextInt(buildings.length)];
+        int action = random.nextInt(100);
+
+        if (action < WRITE_PERCENT) {
+            if (random.nextBoolean()) {
+                building.setName(random.nextBoolean() ? "Park " + random.nextInt(BUILDINGS)
+                        : "Office " + random.nextInt(BUILDINGS));
+            } else {
+                building.setLocation(random.nextDouble(1000), random.nextDouble(1000));
+            }
+        } else if (action < 65) {
+            if (manager.findBuildingById(building.getBuildingId()) != building) {
+                throw new AssertionError("ID lookup returned another building");
+            }
+        } else if (action < 85) {
+            manager.countBuildingsByStatus(BuildingStatus.OPERATIONAL);
+        } else if (action < 95) {
+            try {
+                manager.findBuildingByName(building.getName());
+            } catch (BuildingNotFoundException e) {
+                // Renamed meanwhile
+            }
+        } else {
+            manager.findNearestBuildings(random.nextDouble(1000), random.nextDouble(1000), 5, null, null);
+        }
+    }
+}
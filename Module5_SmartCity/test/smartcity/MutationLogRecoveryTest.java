@@ -0,0 +1,159 @@
+package smartcity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * MODULE 5: MutationLogRecoveryTest - Crash recovery of the write-ahead log
+ *
+ * Plain main() test (no test framework in this project):
+ *   javac -d out src/smartcity/*.java test/smartcity/*.java
+ *   java -ea -cp out smartcity.MutationLogRecoveryTest
+ *
+ * Every scenario simulates a crash by abandoning a log without close()
+ * and recovering the directory into a fresh manager.
+ */
+public class MutationLogRecoveryTest {
+
+    public static void main(String[] args) throws Exception {
+        tornFirstRecordOfLastSegment();
+        emptyLastSegment();
+        unindexedSetterIsLogged();
+        clearIsReplayedSilently();
+        System.out.println("MutationLogRecoveryTest: all checks passed");
+    }
+
+    /**
+     * The crash hit the first record of a new segment: recovery must drop
+     * that segment so the next record can create it again
+     */
+    private static void tornFirstRecordOfLastSegment() throws Exception {
+        Path directory = newDirectory();
+        BuildingManager manager = new BuildingManager(100);
+        MutationLog log = new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT);
+        log.recover(manager);
+        manager.addBuilding(new PublicPark("North Park", 500, 100, "City"));
+        log.rollSegment();
+        manager.addBuilding(new PublicPark("South Park", 300, 50, "City"));
+
+        // Cut the second segment in the middle of its only record
+        List<Path> segments = log.listSegments();
+        check(segments.size() == 2, "expected two segments, found " + segments);
+        truncate(segments.get(1), Files.size(segments.get(1)) / 2);
+
+        BuildingManager recovered = new BuildingManager(100);
+        MutationLog reopened = new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT);
+        check(reopened.recover(recovered) == 1, "only the intact record is replayed");
+        check(recovered.getBuildingCount() == 1, "torn building must not be restored");
+
+        // Logging continues where the torn record was
+        recovered.addBuilding(new PublicPark("East Park", 200, 40, "City"));
+        check(reopened.getLastLsn() == 2, "next LSN reuses the torn record's LSN");
+
+        BuildingManager again = new BuildingManager(100);
+        new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT).recover(again);
+        check(again.getBuildingCount() == 2, "building added after recovery survives the next restart");
+        again.findBuildingByName("East Park");
+        deleteDirectory(directory);
+    }
+
+    /**
+     * The crash happened after the segment file was created but before
+     * anything was written to it
+     */
+    private static void emptyLastSegment() throws Exception {
+        Path directory = newDirectory();
+        BuildingManager manager = new BuildingManager(100);
+        MutationLog log = new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT);
+        log.recover(manager);
+        manager.addBuilding(new PublicPark("North Park", 500, 100, "City"));
+        Files.createFile(directory.resolve(MutationLog.segmentName(log.getLastLsn() + 1)));
+
+        BuildingManager recovered = new BuildingManager(100);
+        MutationLog reopened = new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT);
+        reopened.recover(recovered);
+        recovered.addBuilding(new PublicPark("South Park", 300, 50, "City"));
+        check(recovered.getBuildingCount() == 2, "logging works after an empty segment");
+        deleteDirectory(directory);
+    }
+
+    /**
+     * Attributes without an index (hospital specialization) are logged too
+     */
+    private static void unindexedSetterIsLogged() throws Exception {
+        Path directory = newDirectory();
+        BuildingManager manager = new ConcurrentBuildingManager(100);
+        MutationLog log = new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT);
+        log.recover(manager);
+        ModernHospital hospital = new ModernHospital("City Hospital", 5, 1000, 200);
+        manager.addBuilding(hospital);
+        hospital.setSpecialization("Cardiology");
+
+        BuildingManager recovered = new BuildingManager(100);
+        new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT).recover(recovered);
+        ModernHospital restored = (ModernHospital) recovered.findBuildingById(hospital.getBuildingId());
+        check("Cardiology".equals(restored.getSpecialization()), "specialization change must be replayed");
+        deleteDirectory(directory);
+    }
+
+    /**
+     * A logged clear is replayed without printing anything
+     */
+    private static void clearIsReplayedSilently() throws Exception {
+        Path directory = newDirectory();
+        BuildingManager manager = new BuildingManager(100);
+        MutationLog log = new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT);
+        log.recover(manager);
+        manager.addBuilding(new PublicPark("North Park", 500, 100, "City"));
+        manager.clearAllBuildings();
+        manager.addBuilding(new PublicPark("South Park", 300, 50, "City"));
+
+        BuildingManager recovered = new BuildingManager(100);
+        PrintStream console = System.out;
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(output, true));
+        try {
+            new MutationLog(directory, MutationLog.FsyncPolicy.EVERY_COMMIT).recover(recovered);
+        } finally {
+            System.setOut(console);
+        }
+        check(output.size() == 0, "replay printed: " + output);
+        check(recovered.getBuildingCount() == 1, "only the building added after the clear remains");
+        recovered.findBuildingByName("South Park");
+        deleteDirectory(directory);
+    }
+
+    // HELPERS
+
+    private static void check(boolean condition, String message) {
+        if (!condition) {
+            throw new AssertionError(message);
+        }
+    }
+
+    private static Path newDirectory() throws IOException {
+        return Files.createTempDirectory("smartcity-wal-test");
+    }
+
+    private static void truncate(Path file, long size) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(size);
+        }
+    }
+
+    private static void deleteDirectory(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(file);
+            }
+        }
+    }
+}